@@ -0,0 +1,65 @@
+package com.drawtogether.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Coste de leer el historial de una sala grande: la copia completa de {@link Room#getDrawEvents()}
+ * frente a recorrerlo por bloques con el cursor que usa el envío de HISTORY_CHUNK. Con el
+ * profiler de GC, gc.alloc.rate.norm da los bytes asignados por lectura completa.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RoomHistoryBenchmark {
+    private static final int STROKE_EVENTS = 100;
+    private static final int CHUNK_EVENTS = 500;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int historySize;
+
+    private Room room;
+
+    @Setup
+    public void setUp() {
+        room = new Room(UUID.randomUUID().toString(), "bench", 20);
+        for (int i = 0; i < historySize; i++) {
+            int position = i % STROKE_EVENTS;
+            DrawEventType type = position == 0 ? DrawEventType.STROKE_START
+                    : position == STROKE_EVENTS - 1 ? DrawEventType.STROKE_END : DrawEventType.STROKE_MOVE;
+            room.addDrawEvent(new DrawEvent(UUID.randomUUID().toString(), room.getId(), LocalDateTime.now(),
+                    "user-" + (i % 8), type, new DrawData("#1e90ff", 3.0, i % 1920, i % 1080, "brush")));
+        }
+    }
+
+    @Benchmark
+    public List<DrawEvent> getDrawEvents() {
+        return room.getDrawEvents();
+    }
+
+    @Benchmark
+    public void cursorChunks(Blackhole blackhole) {
+        HistoryCursor cursor = room.openHistory();
+        while (cursor.hasNext()) {
+            blackhole.consume(cursor.next(CHUNK_EVENTS));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.drawtogether.model;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Altas y bajas simultáneas en una sala casi llena. Además de medir el rendimiento de la
+ * reserva de plazas con CAS, falla si el número de participantes llega a superar el máximo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class RoomMembershipBenchmark {
+    private static final int MAX_PARTICIPANTS = 10;
+
+    private Room room;
+
+    @Setup
+    public void setUp() {
+        room = new Room(UUID.randomUUID().toString(), "bench", MAX_PARTICIPANTS);
+    }
+
+    @State(Scope.Thread)
+    public static class Member {
+        String userId;
+
+        @Setup
+        public void setUp() {
+            userId = UUID.randomUUID().toString();
+        }
+    }
+
+    @Benchmark
+    public boolean joinAndLeave(Member member) {
+        boolean joined = room.addParticipant(member.userId);
+        int count = room.getCurrentParticipantsCount();
+        if (count > MAX_PARTICIPANTS) {
+            throw new IllegalStateException("La sala tiene " + count + " participantes con un máximo de " + MAX_PARTICIPANTS);
+        }
+        if (joined) {
+            room.removeParticipant(member.userId);
+        }
+        return joined;
+    }
+}
@@ -0,0 +1,56 @@
+package com.drawtogether.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Room#addDrawEvent} con varios hilos escribiendo en la misma sala, incluidas las
+ * compactaciones que dispara el crecimiento del tail. El número de hilos se cambia con {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RoomWriteBenchmark {
+    private Room room;
+
+    @Setup(Level.Iteration)
+    public void newRoom() {
+        // Una sala nueva por iteración para que el historial no crezca durante toda la ejecución
+        room = new Room(UUID.randomUUID().toString(), "bench", 20);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        DrawEvent event;
+
+        @Setup
+        public void setUp() {
+            event = new DrawEvent(UUID.randomUUID().toString(), "bench", LocalDateTime.now(),
+                    "user-" + Thread.currentThread().threadId(), DrawEventType.STROKE_MOVE,
+                    new DrawData("#1e90ff", 3.0, 412.5, 187.25, "brush"));
+        }
+    }
+
+    @Benchmark
+    public DrawEvent addDrawEvent(Writer writer) {
+        return room.addDrawEvent(writer.event);
+    }
+}
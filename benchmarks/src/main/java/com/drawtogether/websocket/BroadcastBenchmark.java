@@ -0,0 +1,58 @@
+package com.drawtogether.websocket;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coste de {@code broadcastToRoom} según el tamaño de la sala y el total de conexiones del
+ * nodo. Con el índice por sala el coste solo debería crecer con {@code roomSize}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+    @Param({ "2", "8", "20" })
+    public int roomSize;
+
+    @Param({ "100", "2000" })
+    public int nodeConnections;
+
+    private ServerFixture fixture;
+    private String roomId;
+    private String message;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        fixture = new ServerFixture();
+        fixture.populate(nodeConnections, roomSize);
+        roomId = fixture.roomIds.get(0);
+        message = fixture.server.createResponse("USER_JOINED", "Nuevo usuario se unió",
+                Map.of("userId", "user-1", "roomId", roomId));
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void broadcastToRoom() {
+        fixture.server.broadcastToRoom(roomId, message);
+    }
+}
@@ -0,0 +1,50 @@
+package com.drawtogether.websocket;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Lectura de un DRAW_EVENT entrante: el codec en streaming que usa onMessage frente al
+ * árbol JsonObject que se construía antes para todos los mensajes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DrawEventParseBenchmark {
+    private final String message = "{\"action\":\"DRAW_EVENT\",\"eventData\":{\"type\":\"STROKE_MOVE\","
+            + "\"x\":412.5,\"y\":187.25,\"color\":\"#1e90ff\",\"strokeWidth\":3.0,\"tool\":\"brush\"}}";
+
+    @Benchmark
+    public DrawEventCodec.IncomingMessage streaming() {
+        return DrawEventCodec.read(message);
+    }
+
+    @Benchmark
+    public Object tree() {
+        JsonObject json = JsonParser.parseString(message).getAsJsonObject();
+        JsonObject eventData = json.getAsJsonObject("eventData");
+        return new Object[] {
+                json.get("action").getAsString(),
+                eventData.get("type").getAsString(),
+                eventData.get("x").getAsDouble(),
+                eventData.get("y").getAsDouble(),
+                eventData.get("color").getAsString(),
+                eventData.get("strokeWidth").getAsDouble(),
+                eventData.get("tool").getAsString() };
+    }
+}
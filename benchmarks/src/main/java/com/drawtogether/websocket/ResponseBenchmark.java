@@ -0,0 +1,72 @@
+package com.drawtogether.websocket;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.drawtogether.model.DrawData;
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.DrawEventType;
+
+/**
+ * Serialización de respuestas: {@code createResponse} (mapa + Gson) para los mensajes de
+ * control, y un DRAW_EVENT escrito por ese mismo camino frente al codec en streaming.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+    private ServerFixture fixture;
+    private DrawEvent event;
+    private Map<String, Object> userJoined;
+
+    @Setup
+    public void setUp() {
+        fixture = new ServerFixture();
+        event = new DrawEvent(UUID.randomUUID().toString(), UUID.randomUUID().toString(), LocalDateTime.now(),
+                "user-1", DrawEventType.STROKE_MOVE, new DrawData("#1e90ff", 3.0, 412.5, 187.25, "brush"), 1234);
+        userJoined = Map.of(
+                "userId", "user-1",
+                "roomId", event.getRoomId(),
+                "participants", List.of("user-1", "user-2", "user-3", "user-4"),
+                "maxParticipants", 8,
+                "currentParticipantsCount", 4);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public String createResponseUserJoined() {
+        return fixture.server.createResponse("USER_JOINED", "Nuevo usuario se unió", userJoined);
+    }
+
+    @Benchmark
+    public String createResponseDrawEvent() {
+        return fixture.server.createResponse("DRAW_EVENT", "Evento de dibujo", event);
+    }
+
+    @Benchmark
+    public String codecDrawEvent() {
+        return DrawEventCodec.writeDrawEvent(event);
+    }
+}
@@ -0,0 +1,51 @@
+package com.drawtogether.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.drawtogether.config.ServerConfig;
+
+/**
+ * Servidor sin puerto abierto con conexiones {@link StubWebSocket} repartidas en salas.
+ * Los mensajes se procesan en el hilo que llama ({@code MESSAGE_EXECUTION=inline}).
+ */
+final class ServerFixture {
+    final DrawWebSocketServer server;
+    final List<String> roomIds = new ArrayList<>();
+    private int nextConnection;
+
+    ServerFixture() {
+        System.setProperty("MESSAGE_EXECUTION", "inline");
+        this.server = new DrawWebSocketServer(0, ServerConfig.fromEnvironment());
+    }
+
+    /**
+     * Crea salas de {@code roomSize} participantes hasta sumar {@code connections} conexiones.
+     */
+    void populate(int connections, int roomSize) throws InterruptedException {
+        StubWebSocket creator = new StubWebSocket(nextConnection++);
+        CountDownLatch joined = new CountDownLatch(connections);
+        for (int created = 0; created < connections; created += roomSize) {
+            server.onMessage(creator, "{\"action\":\"CREATE_ROOM\",\"roomName\":\"bench-" + roomIds.size()
+                    + "\",\"maxUsers\":" + roomSize + "}");
+            String roomId = creator.getLastText().replaceAll(".*\"roomId\":\"([^\"]+)\".*", "$1");
+            roomIds.add(roomId);
+            for (int i = 0; i < roomSize && created + i < connections; i++) {
+                StubWebSocket conn = new StubWebSocket(nextConnection++);
+                conn.expectJoin(joined);
+                server.onMessage(conn, "{\"action\":\"JOIN_ROOM\",\"roomId\":\"" + roomId
+                        + "\",\"userId\":\"user-" + nextConnection + "\"}");
+            }
+        }
+        // El alta en el índice de la sala y el historial se completan en el buzón de cada sala
+        if (!joined.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Las conexiones no terminaron de unirse a sus salas");
+        }
+    }
+
+    void close() throws InterruptedException {
+        server.stop(0, "");
+    }
+}
@@ -0,0 +1,178 @@
+package com.drawtogether.websocket;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+
+import javax.net.ssl.SSLSession;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.protocols.IProtocol;
+
+/**
+ * Conexión sin red para los benchmarks: cuenta lo que se le envía y avisa cuando termina
+ * de recibir el historial al unirse a una sala.
+ */
+final class StubWebSocket implements WebSocket {
+    private static final Draft DRAFT = new Draft_6455();
+
+    private final InetSocketAddress address;
+    private volatile CountDownLatch joined;
+    private volatile String lastText;
+    private long frames;
+    private Object attachment;
+
+    StubWebSocket(int id) {
+        this.address = InetSocketAddress.createUnresolved("stub-" + id, 0);
+    }
+
+    void expectJoin(CountDownLatch joined) {
+        this.joined = joined;
+    }
+
+    String getLastText() {
+        return lastText;
+    }
+
+    long getFrames() {
+        return frames;
+    }
+
+    @Override
+    public void send(String text) {
+        lastText = text;
+        frames++;
+        CountDownLatch latch = joined;
+        if (latch != null && text.contains("\"HISTORY_END\"")) {
+            joined = null;
+            latch.countDown();
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer bytes) {
+        frames++;
+    }
+
+    @Override
+    public void send(byte[] bytes) {
+        frames++;
+    }
+
+    @Override
+    public void sendFrame(Framedata framedata) {
+        frames++;
+    }
+
+    @Override
+    public void sendFrame(Collection<Framedata> frames) {
+        this.frames += frames.size();
+    }
+
+    @Override
+    public void sendPing() {
+    }
+
+    @Override
+    public void sendFragmentedFrame(Opcode op, ByteBuffer buffer, boolean fin) {
+        frames++;
+    }
+
+    @Override
+    public boolean hasBufferedData() {
+        return false;
+    }
+
+    @Override
+    public void close(int code, String message) {
+    }
+
+    @Override
+    public void close(int code) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void closeConnection(int code, String message) {
+    }
+
+    @Override
+    public InetSocketAddress getRemoteSocketAddress() {
+        return address;
+    }
+
+    @Override
+    public InetSocketAddress getLocalSocketAddress() {
+        return address;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean isClosing() {
+        return false;
+    }
+
+    @Override
+    public boolean isFlushAndClose() {
+        return false;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    @Override
+    public Draft getDraft() {
+        return DRAFT;
+    }
+
+    @Override
+    public ReadyState getReadyState() {
+        return ReadyState.OPEN;
+    }
+
+    @Override
+    public String getResourceDescriptor() {
+        return "/";
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttachment() {
+        return (T) attachment;
+    }
+
+    @Override
+    public <T> void setAttachment(T attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    public boolean hasSSLSupport() {
+        return false;
+    }
+
+    @Override
+    public SSLSession getSSLSession() {
+        throw new IllegalArgumentException("Sin SSL");
+    }
+
+    @Override
+    public IProtocol getProtocol() {
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.drawtogether.loadgen;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma log-lineal de latencias en microsegundos: cada potencia de dos se divide en
+ * 32 cubos, así que un percentil se aleja como mucho un 3 % del valor real. Se registra sin
+ * bloqueos desde cualquier hilo y se lee por copias que se pueden restar entre sí.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (65 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long micros) {
+        counts.incrementAndGet(indexOf(Math.max(0, micros)));
+    }
+
+    long[] snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    static long[] minus(long[] current, long[] earlier) {
+        long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = current[i] - earlier[i];
+        }
+        return result;
+    }
+
+    static long count(long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Límite superior del cubo donde cae el percentil {@code quantile}, o 0 si no hay muestras.
+     */
+    static long percentile(long[] counts, double quantile) {
+        long total = count(counts);
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_COUNT) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        return (msb - SUB_BITS) * SUB_COUNT + (int) (value >>> (msb - SUB_BITS));
+    }
+
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long lower = (long) (index % SUB_COUNT + SUB_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
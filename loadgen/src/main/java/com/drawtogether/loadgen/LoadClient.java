@@ -0,0 +1,136 @@
+package com.drawtogether.loadgen;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Conexión de un cliente simulado. Cuenta lo que recibe, mide la latencia de los eventos
+ * de dibujo y deja en una cola las respuestas que espera el hilo que lo controla.
+ *
+ * El bucle de lectura se ejecuta en un hilo virtual en lugar del hilo de plataforma que
+ * crea {@code connect()}; la librería sigue creando un hilo de plataforma para escribir.
+ */
+final class LoadClient extends WebSocketClient {
+    static final String CLOSED = "CLOSED";
+    private static final Set<String> REPLIES = Set.of(
+            "ROOM_CREATED", "HISTORY_END", "ROOM_LEFT", "ROOMS_LIST", "ERROR", "REDIRECT");
+
+    private final LoadStats stats;
+    private final CountDownLatch opened = new CountDownLatch(1);
+    private final BlockingQueue<JsonObject> replies = new LinkedBlockingQueue<>();
+    private volatile boolean connected;
+    private volatile boolean closing;
+
+    LoadClient(URI uri, LoadStats stats) {
+        super(uri);
+        this.stats = stats;
+        setTcpNoDelay(true);
+    }
+
+    /**
+     * Conecta desde un hilo virtual y espera al handshake. Devuelve false si no se pudo conectar.
+     */
+    boolean start(String name, long timeoutMs) throws InterruptedException {
+        Thread.ofVirtual().name(name).start(this);
+        return opened.await(timeoutMs, TimeUnit.MILLISECONDS) && connected;
+    }
+
+    /**
+     * Espera una respuesta del tipo indicado. Devuelve antes un ERROR, un REDIRECT o el aviso
+     * de cierre si llegan primero, y null si se agota el tiempo.
+     */
+    JsonObject await(String type, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            JsonObject reply = replies.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (reply == null) {
+                return null;
+            }
+            String replyType = reply.get("type").getAsString();
+            if (replyType.equals(type) || replyType.equals("ERROR") || replyType.equals("REDIRECT")
+                    || replyType.equals(CLOSED)) {
+                return reply;
+            }
+        }
+    }
+
+    void shutdown() {
+        closing = true;
+        close();
+    }
+
+    @Override
+    public void onOpen(ServerHandshake handshake) {
+        connected = true;
+        opened.countDown();
+    }
+
+    @Override
+    public void onMessage(String message) {
+        stats.framesReceived.increment();
+        stats.bytesReceived.add(message.length());
+        JsonObject json = JsonParser.parseString(message).getAsJsonObject();
+        String type = json.get("type").getAsString();
+        switch (type) {
+            case "DRAW_EVENT" -> delivered(json.getAsJsonObject("data"));
+            case "DRAW_EVENTS_BATCH" -> {
+                for (JsonElement event : json.getAsJsonObject("data").getAsJsonArray("events")) {
+                    delivered(event.getAsJsonObject());
+                }
+            }
+            default -> {
+                if (type.equals("ERROR")) {
+                    stats.recordError(json.get("message").getAsString());
+                }
+                if (REPLIES.contains(type)) {
+                    replies.add(json);
+                }
+            }
+        }
+    }
+
+    private void delivered(JsonObject event) {
+        JsonObject drawData = event.getAsJsonObject("drawData");
+        if (drawData != null) {
+            stats.recordDelivered(event.get("userId").getAsString(),
+                    drawData.get("x").getAsDouble(), drawData.get("y").getAsDouble());
+        }
+    }
+
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        stats.framesReceived.increment();
+        stats.bytesReceived.add(bytes.remaining());
+    }
+
+    @Override
+    public void onClose(int code, String reason, boolean remote) {
+        boolean wasConnected = connected;
+        connected = false;
+        opened.countDown();
+        if (wasConnected && !closing) {
+            stats.recordClose(code);
+        }
+        JsonObject closed = new JsonObject();
+        closed.addProperty("type", CLOSED);
+        closed.addProperty("code", code);
+        replies.add(closed);
+    }
+
+    @Override
+    public void onError(Exception ex) {
+        // Siempre le sigue onClose, que es donde se contabiliza
+    }
+}
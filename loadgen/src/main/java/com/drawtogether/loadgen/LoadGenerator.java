@@ -0,0 +1,180 @@
+package com.drawtogether.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generador de carga: abre {@code rooms × users} clientes que dibujan contra un servidor en
+ * marcha, más los clientes de lobby y los que entran y salen de las salas que se pidan, cada
+ * uno controlado desde un hilo virtual.
+ *
+ * Las conexiones se reparten a lo largo de la rampa; lo que se mide para el resumen final
+ * empieza al terminarla. Cada {@code --report-interval-s} imprime un resumen parcial.
+ */
+public class LoadGenerator {
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final LoadOptions options;
+    private final LoadStats stats = new LoadStats();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length == 1 && (args[0].equals("--help") || args[0].equals("-h"))) {
+            System.out.print(LoadOptions.USAGE);
+            return;
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        boolean connected = new LoadGenerator(options).run();
+        // Los hilos de escritura del cliente WebSocket no son daemon
+        System.exit(connected ? 0 : 1);
+    }
+
+    /**
+     * Devuelve false si no llegó a conectar ningún cliente.
+     */
+    public boolean run() throws InterruptedException {
+        System.out.println("Generando carga contra " + options.url() + ": " + options.rooms() + " salas x "
+                + options.usersPerRoom() + " usuarios, " + options.lobbyPollers() + " clientes en el lobby, "
+                + options.joiners() + " entrando y saliendo");
+        List<Thread> threads = startClients();
+
+        long start = System.nanoTime();
+        long rampEnd = start + TimeUnit.SECONDS.toNanos(options.rampUpSeconds());
+        long end = rampEnd + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+        long interval = TimeUnit.SECONDS.toNanos(options.reportIntervalSeconds());
+        LoadStats.Snapshot previous = stats.snapshot();
+        LoadStats.Snapshot baseline = options.rampUpSeconds() == 0 ? previous : null;
+        while (previous.nanos() < end) {
+            long next = Math.min(previous.nanos() + interval, end);
+            if (baseline == null) {
+                next = Math.min(next, rampEnd);
+            }
+            TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+            LoadStats.Snapshot current = stats.snapshot();
+            if (baseline == null && current.nanos() >= rampEnd) {
+                baseline = current;
+            }
+            printInterval(TimeUnit.NANOSECONDS.toSeconds(current.nanos() - start), current.since(previous));
+            stats.purgeInFlight();
+            previous = current;
+        }
+
+        running.set(false);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MS);
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+        printSummary(previous.since(baseline));
+        return stats.joins.sum() > 0 || stats.polls.sum() > 0;
+    }
+
+    private List<Thread> startClients() {
+        List<Thread> threads = new ArrayList<>(options.totalClients());
+        long rampMs = TimeUnit.SECONDS.toMillis(options.rampUpSeconds());
+        int total = options.totalClients();
+        int started = 0;
+        List<CompletableFuture<String>> roomIds = new ArrayList<>(options.rooms());
+        for (int room = 0; room < options.rooms(); room++) {
+            CompletableFuture<String> roomId = new CompletableFuture<>();
+            roomIds.add(roomId);
+            for (int user = 0; user < options.usersPerRoom(); user++) {
+                long delay = rampMs * started++ / total;
+                threads.add(Thread.ofVirtual().name("user-" + room + "-" + user)
+                        .start(new SimulatedUser(options, stats, running, room, user, roomId, delay)));
+            }
+        }
+        for (int poller = 0; poller < options.lobbyPollers(); poller++) {
+            long delay = rampMs * started++ / total;
+            threads.add(Thread.ofVirtual().name("lobby-" + poller)
+                    .start(new LobbyPoller(options, stats, running, poller, delay)));
+        }
+        for (int joiner = 0; joiner < options.joiners(); joiner++) {
+            long delay = rampMs * started++ / total;
+            threads.add(Thread.ofVirtual().name("joiner-" + joiner).start(new RoomJoiner(options, stats, running,
+                    joiner, roomIds.get(joiner % options.rooms()), delay)));
+        }
+        return threads;
+    }
+
+    private void printInterval(long elapsedSeconds, LoadStats.Snapshot interval) {
+        long[] latency = interval.drawLatency();
+        System.out.printf("[%4ds] clientes %d/%d | puntos %,.0f/s | entregados %,.0f/s | frames %,.0f/s"
+                        + " | latencia p50 %s p99 %s máx %s | uniones %d | errores %d%n",
+                elapsedSeconds, stats.activeClients.get(), options.totalClients(),
+                interval.perSecond(interval.drawsSent()), interval.perSecond(interval.eventsDelivered()),
+                interval.perSecond(interval.framesReceived()),
+                formatMicros(LatencyHistogram.percentile(latency, 0.50)),
+                formatMicros(LatencyHistogram.percentile(latency, 0.99)),
+                formatMicros(LatencyHistogram.percentile(latency, 1.0)),
+                interval.joins(), interval.errors());
+    }
+
+    private void printSummary(LoadStats.Snapshot measured) {
+        System.out.println();
+        System.out.printf("=== Resultado de %.0f s tras la rampa ===%n", measured.seconds());
+        System.out.printf("Clientes: %d conectados de %d, %d fallos de conexión%n",
+                options.totalClients() - stats.connectFailures.sum(), options.totalClients(),
+                stats.connectFailures.sum());
+        System.out.printf("Puntos enviados:      %,d (%,.0f/s)%n",
+                measured.drawsSent(), measured.perSecond(measured.drawsSent()));
+        System.out.printf("Eventos entregados:   %,d (%,.0f/s)%n",
+                measured.eventsDelivered(), measured.perSecond(measured.eventsDelivered()));
+        System.out.printf("Frames recibidos:     %,d (%,.0f/s, %.1f MB/s)%n", measured.framesReceived(),
+                measured.perSecond(measured.framesReceived()), measured.perSecond(measured.bytesReceived()) / 1e6);
+        printLatency("Latencia de dibujo (envío -> entrega)", measured.drawLatency());
+        printLatency("Unión a sala (JOIN_ROOM -> HISTORY_END)", measured.joinLatency());
+        if (options.joiners() > 0 || options.churnIntervalSeconds() > 0) {
+            printLatency("Latencia de dibujo con uniones en curso", measured.drawLatencyDuringJoins());
+        }
+        if (options.lobbyPollers() > 0) {
+            printLatency("Lobby (GET_ROOMS -> ROOMS_LIST)", measured.lobbyLatency());
+        }
+        System.out.printf("Salidas de sala: %d, uniones: %d%n", measured.leaves(), measured.joins());
+
+        Map<String, Long> errors = stats.getErrors();
+        Map<Integer, Long> closes = stats.getCloses();
+        if (errors.isEmpty() && closes.isEmpty()) {
+            System.out.println("Fallos del servidor: ninguno");
+            return;
+        }
+        System.out.println("Fallos del servidor (toda la ejecución):");
+        errors.forEach((message, count) -> System.out.printf("  ERROR \"%s\": %d%n", message, count));
+        closes.forEach((code, count) -> System.out.printf("  Conexión cerrada por el servidor, código %d: %d%n", code, count));
+    }
+
+    private static void printLatency(String label, long[] counts) {
+        System.out.printf("%s: p50 %s  p90 %s  p99 %s  p99.9 %s  máx %s  (%,d muestras)%n", label,
+                formatMicros(LatencyHistogram.percentile(counts, 0.50)),
+                formatMicros(LatencyHistogram.percentile(counts, 0.90)),
+                formatMicros(LatencyHistogram.percentile(counts, 0.99)),
+                formatMicros(LatencyHistogram.percentile(counts, 0.999)),
+                formatMicros(LatencyHistogram.percentile(counts, 1.0)),
+                LatencyHistogram.count(counts));
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros < 1_000) {
+            return micros + " µs";
+        }
+        if (micros < 1_000_000) {
+            return String.format("%.1f ms", micros / 1e3);
+        }
+        return String.format("%.2f s", micros / 1e6);
+    }
+}
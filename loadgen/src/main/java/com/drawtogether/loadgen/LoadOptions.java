@@ -0,0 +1,105 @@
+package com.drawtogether.loadgen;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parámetros de una ejecución, leídos de argumentos {@code --nombre=valor}.
+ */
+record LoadOptions(URI url, int rooms, int usersPerRoom, int pointsPerStroke, long pointIntervalMs,
+                   long strokePauseMs, long durationSeconds, long rampUpSeconds, long churnIntervalSeconds,
+                   int lobbyPollers, long pollIntervalMs, int preloadEvents, int joiners,
+                   long reportIntervalSeconds) {
+
+    /** Límite de participantes por sala que acepta CREATE_ROOM. */
+    static final int MAX_USERS_PER_ROOM = 20;
+
+    static final String USAGE = """
+            Uso: java -jar target/loadgen.jar [--opción=valor ...]
+              --url=ws://localhost:8080      servidor
+              --rooms=10                     salas
+              --users=10                     usuarios por sala (2-20)
+              --points-per-stroke=30         puntos por trazo (STROKE_START, STROKE_MOVE..., STROKE_END)
+              --point-interval-ms=16         pausa entre puntos de un trazo
+              --stroke-pause-ms=500          pausa entre trazos
+              --duration-s=60                duración de la medición, tras la rampa
+              --ramp-up-s=10                 tiempo en el que se reparten las conexiones
+              --churn-interval-s=0           cada cuánto sale y vuelve a entrar cada usuario (0 = nunca)
+              --lobby-pollers=0              clientes en el lobby pidiendo GET_ROOMS
+              --poll-interval-ms=2000        pausa entre GET_ROOMS de cada uno
+              --preload-events=0             eventos con los que se llena cada sala antes de que entren los demás
+              --joiners=0                    clientes que entran en una sala, reciben el historial y salen, en bucle
+              --report-interval-s=5          cada cuánto se imprime el resumen parcial
+            """;
+
+    private static final Set<String> KEYS = Set.of("url", "rooms", "users", "points-per-stroke",
+            "point-interval-ms", "stroke-pause-ms", "duration-s", "ramp-up-s", "churn-interval-s",
+            "lobby-pollers", "poll-interval-ms", "preload-events", "joiners", "report-interval-s");
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0 || !KEYS.contains(arg.substring(2, equals))) {
+                throw new IllegalArgumentException("Opción desconocida: " + arg);
+            }
+            values.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        int users = readInt(values, "users", 10, 1);
+        if (users > MAX_USERS_PER_ROOM) {
+            System.err.println("Se usan " + MAX_USERS_PER_ROOM + " usuarios por sala, el máximo que admite el servidor");
+            users = MAX_USERS_PER_ROOM;
+        }
+        int rooms = readInt(values, "rooms", 10, 1);
+        int joiners = readInt(values, "joiners", 0, 0);
+        if (users + Math.ceilDiv(joiners, rooms) > MAX_USERS_PER_ROOM) {
+            throw new IllegalArgumentException("Con --joiners=" + joiners + " cada sala pasaría de "
+                    + MAX_USERS_PER_ROOM + " participantes");
+        }
+        return new LoadOptions(
+                URI.create(values.getOrDefault("url", "ws://localhost:8080")),
+                rooms,
+                users,
+                readInt(values, "points-per-stroke", 30, 2),
+                readInt(values, "point-interval-ms", 16, 0),
+                readInt(values, "stroke-pause-ms", 500, 0),
+                readInt(values, "duration-s", 60, 1),
+                readInt(values, "ramp-up-s", 10, 0),
+                readInt(values, "churn-interval-s", 0, 0),
+                readInt(values, "lobby-pollers", 0, 0),
+                readInt(values, "poll-interval-ms", 2000, 1),
+                readInt(values, "preload-events", 0, 0),
+                joiners,
+                readInt(values, "report-interval-s", 5, 1));
+    }
+
+    int totalClients() {
+        return rooms * usersPerRoom + lobbyPollers + joiners;
+    }
+
+    /**
+     * Participantes con los que se crea cada sala: sus usuarios más los clientes que entran y salen.
+     */
+    int roomCapacity() {
+        return Math.max(2, usersPerRoom + Math.ceilDiv(joiners, rooms));
+    }
+
+    private static int readInt(Map<String, String> values, String key, int defaultValue, int min) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed < min) {
+                throw new IllegalArgumentException("--" + key + " debe ser al menos " + min);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + key + " no es un número: " + value);
+        }
+    }
+}
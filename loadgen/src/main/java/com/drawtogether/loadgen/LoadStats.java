@@ -0,0 +1,128 @@
+package com.drawtogether.loadgen;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores compartidos por todos los clientes simulados.
+ *
+ * La latencia de dibujo se mide de extremo a extremo: al enviar un punto se anota el
+ * instante con la clave (usuario, x, y), y cada cliente de la sala que lo recibe calcula
+ * el tiempo transcurrido. El servidor no devuelve el evento al remitente, así que cada
+ * punto produce una muestra por cada otro participante. Las muestras que llegan mientras
+ * algún cliente está recibiendo el historial de una unión se anotan además aparte.
+ */
+final class LoadStats {
+    private static final long IN_FLIGHT_TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    final LatencyHistogram drawLatency = new LatencyHistogram();
+    final LatencyHistogram drawLatencyDuringJoins = new LatencyHistogram();
+    final LatencyHistogram joinLatency = new LatencyHistogram();
+    final LatencyHistogram lobbyLatency = new LatencyHistogram();
+    final LongAdder drawsSent = new LongAdder();
+    final LongAdder eventsDelivered = new LongAdder();
+    final LongAdder framesReceived = new LongAdder();
+    final LongAdder bytesReceived = new LongAdder();
+    final LongAdder joins = new LongAdder();
+    final LongAdder leaves = new LongAdder();
+    final LongAdder polls = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+    final AtomicInteger activeClients = new AtomicInteger();
+    final AtomicInteger joinsInProgress = new AtomicInteger();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> closes = new ConcurrentHashMap<>();
+    private final Map<String, Long> inFlight = new ConcurrentHashMap<>();
+
+    void recordSent(String userId, double x, double y) {
+        inFlight.put(key(userId, x, y), System.nanoTime());
+        drawsSent.increment();
+    }
+
+    void recordDelivered(String userId, double x, double y) {
+        eventsDelivered.increment();
+        Long sentNanos = inFlight.get(key(userId, x, y));
+        if (sentNanos != null) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentNanos);
+            drawLatency.record(micros);
+            if (joinsInProgress.get() > 0) {
+                drawLatencyDuringJoins.record(micros);
+            }
+        }
+    }
+
+    /**
+     * Olvida los puntos antiguos; los de un usuario solo en su sala nunca se entregan.
+     */
+    void purgeInFlight() {
+        long oldest = System.nanoTime() - IN_FLIGHT_TTL_NANOS;
+        inFlight.values().removeIf(sentNanos -> sentNanos < oldest);
+    }
+
+    void recordError(String message) {
+        errors.computeIfAbsent(String.valueOf(message), key -> new LongAdder()).increment();
+    }
+
+    void recordClose(int code) {
+        closes.computeIfAbsent(code, key -> new LongAdder()).increment();
+    }
+
+    Map<String, Long> getErrors() {
+        return sum(errors);
+    }
+
+    Map<Integer, Long> getCloses() {
+        return sum(closes);
+    }
+
+    long getErrorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    Snapshot snapshot() {
+        return new Snapshot(System.nanoTime(), drawsSent.sum(), eventsDelivered.sum(), framesReceived.sum(),
+                bytesReceived.sum(), joins.sum(), leaves.sum(), polls.sum(), getErrorCount(),
+                drawLatency.snapshot(), drawLatencyDuringJoins.snapshot(), joinLatency.snapshot(),
+                lobbyLatency.snapshot());
+    }
+
+    private static String key(String userId, double x, double y) {
+        return userId + '|' + x + '|' + y;
+    }
+
+    private static <K extends Comparable<K>> Map<K, Long> sum(Map<K, LongAdder> adders) {
+        Map<K, Long> result = new TreeMap<>();
+        adders.forEach((key, adder) -> result.put(key, adder.sum()));
+        return result;
+    }
+
+    /**
+     * Valores acumulados en un instante; {@link #since} da lo ocurrido entre dos instantes.
+     */
+    record Snapshot(long nanos, long drawsSent, long eventsDelivered, long framesReceived, long bytesReceived,
+                    long joins, long leaves, long polls, long errors,
+                    long[] drawLatency, long[] drawLatencyDuringJoins, long[] joinLatency, long[] lobbyLatency) {
+
+        Snapshot since(Snapshot earlier) {
+            return new Snapshot(nanos - earlier.nanos, drawsSent - earlier.drawsSent,
+                    eventsDelivered - earlier.eventsDelivered, framesReceived - earlier.framesReceived,
+                    bytesReceived - earlier.bytesReceived, joins - earlier.joins, leaves - earlier.leaves,
+                    polls - earlier.polls, errors - earlier.errors,
+                    LatencyHistogram.minus(drawLatency, earlier.drawLatency),
+                    LatencyHistogram.minus(drawLatencyDuringJoins, earlier.drawLatencyDuringJoins),
+                    LatencyHistogram.minus(joinLatency, earlier.joinLatency),
+                    LatencyHistogram.minus(lobbyLatency, earlier.lobbyLatency));
+        }
+
+        double seconds() {
+            return Math.max(nanos, 1) / 1e9;
+        }
+
+        double perSecond(long value) {
+            return value / seconds();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.drawtogether.loadgen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Cliente que se queda en el lobby pidiendo la lista de salas con GET_ROOMS.
+ */
+final class LobbyPoller implements Runnable {
+    private static final int PAGE_SIZE = 50;
+
+    private final LoadOptions options;
+    private final LoadStats stats;
+    private final AtomicBoolean running;
+    private final int index;
+    private final long startDelayMs;
+
+    LobbyPoller(LoadOptions options, LoadStats stats, AtomicBoolean running, int index, long startDelayMs) {
+        this.options = options;
+        this.stats = stats;
+        this.running = running;
+        this.index = index;
+        this.startDelayMs = startDelayMs;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Thread.sleep(startDelayMs);
+            if (!running.get()) {
+                return;
+            }
+            LoadClient client = new LoadClient(options.url(), stats);
+            if (!client.start("ws-lobby-" + index, SimulatedUser.CONNECT_TIMEOUT_MS)) {
+                stats.connectFailures.increment();
+                return;
+            }
+            stats.activeClients.incrementAndGet();
+            try {
+                poll(client);
+            } catch (WebsocketNotConnectedException e) {
+                // El servidor cerró la conexión; onClose ya lo contabilizó
+            } finally {
+                stats.activeClients.decrementAndGet();
+                client.shutdown();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void poll(LoadClient client) throws InterruptedException {
+        while (running.get() && client.isOpen()) {
+            long start = System.nanoTime();
+            client.send("{\"action\":\"GET_ROOMS\",\"limit\":" + PAGE_SIZE + "}");
+            JsonObject reply = client.await("ROOMS_LIST", SimulatedUser.REPLY_TIMEOUT_MS);
+            if (reply == null) {
+                stats.recordError("Sin respuesta ROOMS_LIST en el lobby " + index);
+                return;
+            }
+            if (reply.get("type").getAsString().equals("ROOMS_LIST")) {
+                stats.lobbyLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                stats.polls.increment();
+            } else if (reply.get("type").getAsString().equals(LoadClient.CLOSED)) {
+                return;
+            }
+            Thread.sleep(SimulatedUser.jitter(options.pollIntervalMs()));
+        }
+    }
+}
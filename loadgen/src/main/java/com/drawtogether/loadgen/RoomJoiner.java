@@ -0,0 +1,88 @@
+package com.drawtogether.loadgen;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Cliente que no dibuja: entra en una sala, recibe el historial completo y vuelve a salir,
+ * en bucle. Con {@code --preload-events} cada unión reproduce un historial grande mientras
+ * los demás usuarios siguen dibujando, que es lo que mide la latencia con uniones en curso.
+ */
+final class RoomJoiner implements Runnable {
+    private final LoadOptions options;
+    private final LoadStats stats;
+    private final AtomicBoolean running;
+    private final int index;
+    private final CompletableFuture<String> room;
+    private final long startDelayMs;
+
+    RoomJoiner(LoadOptions options, LoadStats stats, AtomicBoolean running, int index,
+               CompletableFuture<String> room, long startDelayMs) {
+        this.options = options;
+        this.stats = stats;
+        this.running = running;
+        this.index = index;
+        this.room = room;
+        this.startDelayMs = startDelayMs;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Thread.sleep(startDelayMs);
+            if (!running.get()) {
+                return;
+            }
+            String roomId;
+            try {
+                roomId = room.get();
+            } catch (ExecutionException e) {
+                return;
+            }
+            LoadClient client = new LoadClient(options.url(), stats);
+            if (!client.start("ws-joiner-" + index, SimulatedUser.CONNECT_TIMEOUT_MS)) {
+                stats.connectFailures.increment();
+                return;
+            }
+            stats.activeClients.incrementAndGet();
+            try {
+                rejoin(client, roomId);
+            } catch (WebsocketNotConnectedException e) {
+                // El servidor cerró la conexión; onClose ya lo contabilizó
+            } finally {
+                stats.activeClients.decrementAndGet();
+                client.shutdown();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void rejoin(LoadClient client, String roomId) throws InterruptedException {
+        String userId = "joiner-" + index;
+        while (running.get() && client.isOpen()) {
+            if (!expect(SimulatedUser.joinRoom(client, stats, roomId, userId), "HISTORY_END")) {
+                return;
+            }
+            client.send("{\"action\":\"LEAVE_ROOM\"}");
+            if (!expect(client.await("ROOM_LEFT", SimulatedUser.REPLY_TIMEOUT_MS), "ROOM_LEFT")) {
+                return;
+            }
+            stats.leaves.increment();
+            Thread.sleep(SimulatedUser.jitter(options.strokePauseMs()));
+        }
+    }
+
+    private boolean expect(JsonObject reply, String type) {
+        if (reply == null) {
+            stats.recordError("Sin respuesta " + type + " en el cliente de uniones " + index);
+            return false;
+        }
+        return reply.get("type").getAsString().equals(type);
+    }
+}
@@ -0,0 +1,266 @@
+package com.drawtogether.loadgen;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Un usuario dibujando en una sala, controlado desde su propio hilo virtual: trazos de
+ * STROKE_START, varios STROKE_MOVE y STROKE_END con pausas entre puntos y entre trazos, y
+ * si se pide, salidas y vueltas a la sala cada cierto tiempo.
+ *
+ * El primer usuario de cada sala la crea y, con {@code --preload-events}, la llena antes de
+ * dejar entrar al resto, para medir uniones con historiales grandes.
+ */
+final class SimulatedUser implements Runnable {
+    static final long CONNECT_TIMEOUT_MS = 10_000;
+    static final long REPLY_TIMEOUT_MS = 10_000;
+    static final long JOIN_TIMEOUT_MS = 60_000;
+    private static final double CANVAS_WIDTH = 1920;
+    private static final double CANVAS_HEIGHT = 1080;
+    private static final double STEP = 6;
+    private static final int PRELOAD_STROKE_POINTS = 50;
+    private static final String[] COLORS = {"#000000", "#e53935", "#1e88e5", "#43a047", "#fdd835", "#8e24aa"};
+    private static final String[] TOOLS = {"brush", "brush", "brush", "pencil", "eraser"};
+
+    private final LoadOptions options;
+    private final LoadStats stats;
+    private final AtomicBoolean running;
+    private final String userId;
+    private final int roomIndex;
+    private final boolean owner;
+    private final CompletableFuture<String> room;
+    private final long startDelayMs;
+    private LoadClient client;
+    private double x;
+    private double y;
+    private double angle;
+
+    SimulatedUser(LoadOptions options, LoadStats stats, AtomicBoolean running, int roomIndex, int userIndex,
+                  CompletableFuture<String> room, long startDelayMs) {
+        this.options = options;
+        this.stats = stats;
+        this.running = running;
+        this.userId = "load-" + roomIndex + "-" + userIndex;
+        this.roomIndex = roomIndex;
+        this.owner = userIndex == 0;
+        this.room = room;
+        this.startDelayMs = startDelayMs;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Thread.sleep(startDelayMs);
+            if (!running.get()) {
+                return;
+            }
+            client = new LoadClient(options.url(), stats);
+            if (!client.start("ws-" + userId, CONNECT_TIMEOUT_MS)) {
+                stats.connectFailures.increment();
+                return;
+            }
+            stats.activeClients.incrementAndGet();
+            try {
+                simulate();
+            } catch (WebsocketNotConnectedException e) {
+                // El servidor cerró la conexión; onClose ya lo contabilizó
+            } finally {
+                stats.activeClients.decrementAndGet();
+                client.shutdown();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (owner) {
+                // Si no llegó a crear la sala, los demás usuarios no deben quedarse esperando
+                room.completeExceptionally(new IllegalStateException("No se creó la sala " + roomIndex));
+            }
+        }
+    }
+
+    private void simulate() throws InterruptedException {
+        String roomId;
+        if (owner) {
+            roomId = createRoom();
+            if (roomId == null || !join(roomId)) {
+                return;
+            }
+            preload();
+            room.complete(roomId);
+        } else {
+            try {
+                roomId = room.get();
+            } catch (ExecutionException e) {
+                return;
+            }
+            if (!join(roomId)) {
+                return;
+            }
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        x = random.nextDouble(CANVAS_WIDTH);
+        y = random.nextDouble(CANVAS_HEIGHT);
+        long nextChurn = nextChurn();
+        while (running.get() && client.isOpen()) {
+            drawStroke();
+            Thread.sleep(jitter(options.strokePauseMs()));
+            if (System.nanoTime() >= nextChurn) {
+                if (!leave()) {
+                    return;
+                }
+                Thread.sleep(jitter(options.strokePauseMs()));
+                if (!running.get() || !join(roomId)) {
+                    return;
+                }
+                nextChurn = nextChurn();
+            }
+        }
+    }
+
+    private String createRoom() throws InterruptedException {
+        client.send("{\"action\":\"CREATE_ROOM\",\"roomName\":\"load-" + roomIndex
+                + "\",\"maxUsers\":" + options.roomCapacity() + "}");
+        JsonObject reply = client.await("ROOM_CREATED", REPLY_TIMEOUT_MS);
+        if (!isReply(reply, "ROOM_CREATED")) {
+            return null;
+        }
+        return reply.getAsJsonObject("data").get("roomId").getAsString();
+    }
+
+    /**
+     * Entra en la sala y espera a terminar de recibir el historial, que es lo que mide la unión.
+     */
+    private boolean join(String roomId) throws InterruptedException {
+        return isReply(joinRoom(client, stats, roomId, userId), "HISTORY_END");
+    }
+
+    /**
+     * Envía JOIN_ROOM y espera a HISTORY_END; mientras tanto la unión cuenta como en curso.
+     * Devuelve la respuesta recibida, o null si no llega ninguna.
+     */
+    static JsonObject joinRoom(LoadClient client, LoadStats stats, String roomId, String userId)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        stats.joinsInProgress.incrementAndGet();
+        JsonObject reply;
+        try {
+            client.send("{\"action\":\"JOIN_ROOM\",\"roomId\":\"" + roomId + "\",\"userId\":\"" + userId + "\"}");
+            reply = client.await("HISTORY_END", JOIN_TIMEOUT_MS);
+        } finally {
+            stats.joinsInProgress.decrementAndGet();
+        }
+        if (reply != null && reply.get("type").getAsString().equals("HISTORY_END")) {
+            stats.joinLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            stats.joins.increment();
+        }
+        return reply;
+    }
+
+    private boolean leave() throws InterruptedException {
+        client.send("{\"action\":\"LEAVE_ROOM\"}");
+        if (!isReply(client.await("ROOM_LEFT", REPLY_TIMEOUT_MS), "ROOM_LEFT")) {
+            return false;
+        }
+        stats.leaves.increment();
+        return true;
+    }
+
+    private void drawStroke() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String color = COLORS[random.nextInt(COLORS.length)];
+        String tool = TOOLS[random.nextInt(TOOLS.length)];
+        double strokeWidth = 1 + random.nextInt(12);
+        int points = options.pointsPerStroke();
+        for (int i = 0; i < points; i++) {
+            String type = i == 0 ? "STROKE_START" : i == points - 1 ? "STROKE_END" : "STROKE_MOVE";
+            stats.recordSent(userId, x, y);
+            client.send(drawEvent(type, color, strokeWidth, tool));
+            advance(random);
+            if (i < points - 1 && options.pointIntervalMs() > 0) {
+                Thread.sleep(options.pointIntervalMs());
+            }
+        }
+    }
+
+    /**
+     * Llena la sala de trazos seguidos sin medirlos, antes de que haya nadie más dentro.
+     */
+    private void preload() throws InterruptedException {
+        if (options.preloadEvents() == 0) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < options.preloadEvents(); i++) {
+            int point = i % PRELOAD_STROKE_POINTS;
+            String type = point == 0 ? "STROKE_START" : point == PRELOAD_STROKE_POINTS - 1 ? "STROKE_END" : "STROKE_MOVE";
+            client.send(drawEvent(type, COLORS[0], 3, "brush"));
+            advance(random);
+        }
+        // El servidor atiende en orden los mensajes de una conexión: la respuesta llega
+        // cuando ya ha recibido todos los eventos anteriores
+        client.send("{\"action\":\"GET_ROOMS\",\"limit\":1}");
+        isReply(client.await("ROOMS_LIST", JOIN_TIMEOUT_MS), "ROOMS_LIST");
+    }
+
+    private String drawEvent(String type, String color, double strokeWidth, String tool) {
+        return new StringBuilder(192)
+                .append("{\"action\":\"DRAW_EVENT\",\"eventData\":{\"type\":\"").append(type)
+                .append("\",\"x\":").append(x)
+                .append(",\"y\":").append(y)
+                .append(",\"color\":\"").append(color)
+                .append("\",\"strokeWidth\":").append(strokeWidth)
+                .append(",\"tool\":\"").append(tool)
+                .append("\"}}")
+                .toString();
+    }
+
+    /**
+     * Avanza el trazo con pequeños giros; las coordenadas llevan decimales como las de un
+     * puntero real, lo que además hace única la clave con la que se mide cada punto.
+     */
+    private void advance(ThreadLocalRandom random) {
+        angle += random.nextGaussian() * 0.3;
+        x += Math.cos(angle) * STEP + random.nextDouble();
+        y += Math.sin(angle) * STEP + random.nextDouble();
+        if (x < 0 || x > CANVAS_WIDTH || y < 0 || y > CANVAS_HEIGHT) {
+            angle += Math.PI;
+            x = Math.min(Math.max(x, 0), CANVAS_WIDTH);
+            y = Math.min(Math.max(y, 0), CANVAS_HEIGHT);
+        }
+    }
+
+    private long nextChurn() {
+        if (options.churnIntervalSeconds() == 0) {
+            return Long.MAX_VALUE;
+        }
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(jitter(options.churnIntervalSeconds() * 1000));
+    }
+
+    private boolean isReply(JsonObject reply, String expected) {
+        if (reply == null) {
+            stats.recordError("Sin respuesta " + expected + " en " + userId);
+            return false;
+        }
+        String type = reply.get("type").getAsString();
+        if (type.equals("REDIRECT")) {
+            // El generador apunta a un solo nodo; las salas de otro nodo cuentan como fallo
+            stats.recordError("REDIRECT a " + reply.getAsJsonObject("data").get("nodeId").getAsString());
+        }
+        return type.equals(expected);
+    }
+
+    /**
+     * Entre la mitad y vez y media del valor, para que los clientes no vayan sincronizados.
+     */
+    static long jitter(long millis) {
+        return millis == 0 ? 0 : millis / 2 + ThreadLocalRandom.current().nextLong(millis + 1);
+    }
+}
@@ -1,9 +1,20 @@
 package com.drawtogether;
 
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.LoggerContext;
+
+import com.drawtogether.config.ServerConfig;
+import com.drawtogether.repository.ReplicaReceiver;
 import com.drawtogether.websocket.DrawWebSocketServer;
 
 public class Main {
-    public static void main(String[] args) {
+    private static final Logger log = LoggerFactory.getLogger(Main.class);
+
+    public static void main(String[] args) throws IOException {
         int port = 8080; // Default port
 
         // Primero intentar obtener el puerto de la variable de entorno PORT (para Render)
@@ -12,7 +23,7 @@ public class Main {
             try {
                 port = Integer.parseInt(portEnv);
             } catch (NumberFormatException exception) {
-                System.err.println("Variable de entorno PORT invalida, usando el puerto por defecto: " + port);
+                log.warn("Variable de entorno PORT invalida, usando el puerto por defecto: {}", port);
             }
         }
         // Si no hay variable de entorno, intentar usar argumentos de línea de comandos
@@ -20,24 +31,37 @@ public class Main {
             try {
                 port = Integer.parseInt(args[0]);
             } catch (NumberFormatException exception) {
-                System.err.println("Puerto invalido, usando el puerto por defecto: " + port);
+                log.warn("Puerto invalido, usando el puerto por defecto: {}", port);
             }
         }
 
-        DrawWebSocketServer server = new DrawWebSocketServer(port);
+        ServerConfig config = ServerConfig.fromEnvironment();
+        DrawWebSocketServer server;
+        if (config.getReplicationListenPort() > 0) {
+            // Nodo de reserva: solo acepta clientes cuando el principal deja de responder
+            ReplicaReceiver replica = new ReplicaReceiver(config.getReplicationListenPort(),
+                    config.getReplicationPromoteAfterMs());
+            server = new DrawWebSocketServer(port, config, replica.awaitPromotion());
+        } else {
+            server = new DrawWebSocketServer(port, config);
+        }
         server.start();
 
-        System.out.println("Servidor DrawTogether iniciado en el puerto: " + port);
-        System.out.println("Presiona Ctrl+C para detener el servidor.");
+        log.info("Servidor DrawTogether iniciado en el puerto: {}", port);
+        log.info("Presiona Ctrl+C para detener el servidor.");
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            System.out.println("Cerrando servidor DrawTogether...");
+            log.info("Cerrando servidor DrawTogether...");
 
             try {
                 server.stop();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
+            // Vaciar la cola del appender asíncrono antes de que termine la JVM
+            if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+                context.stop();
+            }
         }));
     }
 }
\ No newline at end of file
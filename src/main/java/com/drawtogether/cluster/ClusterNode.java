@@ -0,0 +1,7 @@
+package com.drawtogether.cluster;
+
+/**
+ * Un nodo del clúster: su identificador y la URL WebSocket por la que lo alcanzan los clientes.
+ */
+public record ClusterNode(String id, String url) {
+}
@@ -0,0 +1,114 @@
+package com.drawtogether.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reparto de salas entre los nodos del clúster por hash consistente del id de sala.
+ *
+ * Cada nodo ocupa {@link #VIRTUAL_NODES} posiciones en el anillo para que el reparto sea
+ * uniforme; al añadir o quitar un nodo solo cambian de dueño las salas de sus posiciones.
+ * La tabla de nodos es estática y tiene que ser la misma en todos ellos.
+ */
+public final class ClusterRing {
+    private static final int VIRTUAL_NODES = 160;
+
+    private final List<ClusterNode> nodes;
+    private final ClusterNode localNode;
+    private final TreeMap<Long, ClusterNode> ring = new TreeMap<>();
+
+    private ClusterRing(List<ClusterNode> nodes, ClusterNode localNode) {
+        this.nodes = nodes;
+        this.localNode = localNode;
+        for (ClusterNode node : nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(node.id() + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * Un único nodo que es dueño de todas las salas.
+     */
+    public static ClusterRing standalone() {
+        return new ClusterRing(List.of(), null);
+    }
+
+    /**
+     * Construye el anillo a partir de una lista {@code id=url,id=url}. Sin lista el nodo funciona solo.
+     */
+    public static ClusterRing parse(String nodeList, String localNodeId) {
+        if (nodeList == null) {
+            return standalone();
+        }
+        List<ClusterNode> nodes = new ArrayList<>();
+        ClusterNode localNode = null;
+        for (String entry : nodeList.split(",")) {
+            int separator = entry.indexOf('=');
+            if (separator <= 0 || separator == entry.length() - 1) {
+                throw new IllegalArgumentException("Nodo invalido en CLUSTER_NODES: " + entry);
+            }
+            ClusterNode node = new ClusterNode(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+            for (ClusterNode other : nodes) {
+                if (other.id().equals(node.id())) {
+                    throw new IllegalArgumentException("Nodo repetido en CLUSTER_NODES: " + node.id());
+                }
+            }
+            nodes.add(node);
+            if (node.id().equals(localNodeId)) {
+                localNode = node;
+            }
+        }
+        if (localNode == null) {
+            throw new IllegalArgumentException("NODE_ID " + localNodeId + " no aparece en CLUSTER_NODES");
+        }
+        return new ClusterRing(Collections.unmodifiableList(nodes), localNode);
+    }
+
+    public boolean isClustered() {
+        return localNode != null;
+    }
+
+    public List<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    public ClusterNode getLocalNode() {
+        return localNode;
+    }
+
+    /**
+     * Nodo dueño de la sala: el primero en el anillo a partir del hash de su id.
+     */
+    public ClusterNode ownerOf(String roomId) {
+        if (!isClustered()) {
+            return null;
+        }
+        Map.Entry<Long, ClusterNode> entry = ring.ceilingEntry(hash(roomId));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    public boolean isLocal(String roomId) {
+        return !isClustered() || ownerOf(roomId) == localNode;
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                value = (value << 8) | (digest[i] & 0xff);
+            }
+            return value;
+        } catch (NoSuchAlgorithmException e) {
+            // Todas las JVM incluyen MD5
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.drawtogether.config;
+
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parámetros del servidor que se pueden ajustar con variables de entorno
+ * (o propiedades de sistema con el mismo nombre).
+ */
+public class ServerConfig {
+    private static final Logger log = LoggerFactory.getLogger(ServerConfig.class);
+
+    private final int drawBatchIntervalMs;
+    private final int drawBatchMaxEvents;
+    private final int historyChunkEvents;
+    private final long outboundHighWatermarkBytes;
+    private final long outboundLowWatermarkBytes;
+    private final long outboundEvictBytes;
+    private final long slowConsumerEvictMs;
+    private final int lobbyUpdateIntervalMs;
+    private final String roomLogDir;
+    private final int roomLogSegmentBytes;
+    private final long roomLogFlushIntervalMs;
+    private final long roomMemoryBudgetBytes;
+    private final long roomSpillIdleMs;
+    private final String roomSpillDir;
+    private final long emptyRoomGraceMs;
+    private final long roomReaperIntervalMs;
+    private final String messageExecution;
+    private final String clusterNodes;
+    private final String nodeId;
+    private final String replicationStandby;
+    private final int replicationListenPort;
+    private final long replicationPromoteAfterMs;
+    private final int replicationMaxPending;
+    private final int metricsPort;
+    private final int logDebugSamplesPerSecond;
+
+    private ServerConfig() {
+        this.drawBatchIntervalMs = readInt("DRAW_BATCH_INTERVAL_MS", 0);
+        this.drawBatchMaxEvents = readInt("DRAW_BATCH_MAX_EVENTS", 64);
+        this.historyChunkEvents = readInt("HISTORY_CHUNK_EVENTS", 500);
+        this.outboundHighWatermarkBytes = readLong("OUTBOUND_HIGH_WATERMARK_BYTES", 1024 * 1024);
+        this.outboundLowWatermarkBytes = readLong("OUTBOUND_LOW_WATERMARK_BYTES", 256 * 1024);
+        this.outboundEvictBytes = readLong("OUTBOUND_EVICT_BYTES", 8 * 1024 * 1024);
+        this.slowConsumerEvictMs = readLong("SLOW_CONSUMER_EVICT_MS", 10_000);
+        this.lobbyUpdateIntervalMs = readInt("LOBBY_UPDATE_INTERVAL_MS", 200);
+        this.roomLogDir = readString("ROOM_LOG_DIR", null);
+        this.roomLogSegmentBytes = readInt("ROOM_LOG_SEGMENT_BYTES", 8 * 1024 * 1024);
+        this.roomLogFlushIntervalMs = readLong("ROOM_LOG_FLUSH_INTERVAL_MS", 50);
+        this.roomMemoryBudgetBytes = readLong("ROOM_MEMORY_BUDGET_BYTES", 0);
+        this.roomSpillIdleMs = readLong("ROOM_SPILL_IDLE_MS", 60_000);
+        this.roomSpillDir = readString("ROOM_SPILL_DIR",
+                Path.of(System.getProperty("java.io.tmpdir"), "drawtogether-spill").toString());
+        this.emptyRoomGraceMs = readLong("EMPTY_ROOM_GRACE_MS", 60_000);
+        this.roomReaperIntervalMs = readLong("ROOM_REAPER_INTERVAL_MS", 10_000);
+        this.messageExecution = readString("MESSAGE_EXECUTION", "virtual");
+        this.clusterNodes = readString("CLUSTER_NODES", null);
+        this.nodeId = readString("NODE_ID", null);
+        this.replicationStandby = readString("REPLICATION_STANDBY", null);
+        this.replicationListenPort = readInt("REPLICATION_LISTEN_PORT", 0);
+        this.replicationPromoteAfterMs = readLong("REPLICATION_PROMOTE_AFTER_MS", 3_000);
+        this.replicationMaxPending = readInt("REPLICATION_MAX_PENDING", 65_536);
+        this.metricsPort = readInt("METRICS_PORT", 0);
+        this.logDebugSamplesPerSecond = readInt("LOG_DEBUG_SAMPLES_PER_SECOND", 10);
+    }
+
+    public static ServerConfig fromEnvironment() {
+        return new ServerConfig();
+    }
+
+    /**
+     * Intervalo de vaciado de los lotes de eventos de dibujo. Con 0 el batching está
+     * desactivado y cada evento se retransmite en cuanto llega.
+     */
+    public int getDrawBatchIntervalMs() {
+        return drawBatchIntervalMs;
+    }
+
+    public int getDrawBatchMaxEvents() {
+        return drawBatchMaxEvents;
+    }
+
+    /**
+     * Eventos por cada bloque HISTORY_CHUNK al enviar el historial de una sala.
+     */
+    public int getHistoryChunkEvents() {
+        return historyChunkEvents;
+    }
+
+    /**
+     * Bytes pendientes de envío a partir de los cuales se descartan los STROKE_MOVE para esa conexión.
+     */
+    public long getOutboundHighWatermarkBytes() {
+        return outboundHighWatermarkBytes;
+    }
+
+    /**
+     * Bytes pendientes por debajo de los cuales la conexión vuelve a recibirlo todo.
+     */
+    public long getOutboundLowWatermarkBytes() {
+        return outboundLowWatermarkBytes;
+    }
+
+    /**
+     * Bytes pendientes a partir de los cuales se desconecta al cliente lento.
+     */
+    public long getOutboundEvictBytes() {
+        return outboundEvictBytes;
+    }
+
+    /**
+     * Tiempo máximo que una conexión puede seguir por encima de la marca alta antes de desconectarla.
+     */
+    public long getSlowConsumerEvictMs() {
+        return slowConsumerEvictMs;
+    }
+
+    /**
+     * Intervalo durante el que se acumulan los cambios de salas antes de enviar un ROOMS_DELTA al lobby.
+     */
+    public int getLobbyUpdateIntervalMs() {
+        return lobbyUpdateIntervalMs;
+    }
+
+    /**
+     * Directorio del log persistente de salas. Sin valor las salas solo se guardan en memoria.
+     */
+    public String getRoomLogDir() {
+        return roomLogDir;
+    }
+
+    /**
+     * Tamaño de cada segmento del log antes de pasar al siguiente.
+     */
+    public int getRoomLogSegmentBytes() {
+        return roomLogSegmentBytes;
+    }
+
+    /**
+     * Intervalo entre sincronizaciones del log con el disco; es lo máximo que se puede perder en una caída.
+     */
+    public long getRoomLogFlushIntervalMs() {
+        return roomLogFlushIntervalMs;
+    }
+
+    /**
+     * Memoria máxima para los historiales de las salas antes de pasar los inactivos a disco. Con 0 no se pasa ninguno.
+     */
+    public long getRoomMemoryBudgetBytes() {
+        return roomMemoryBudgetBytes;
+    }
+
+    /**
+     * Tiempo sin actividad a partir del cual el historial de una sala se puede pasar a disco.
+     */
+    public long getRoomSpillIdleMs() {
+        return roomSpillIdleMs;
+    }
+
+    public String getRoomSpillDir() {
+        return roomSpillDir;
+    }
+
+    /**
+     * Tiempo que se conserva una sala vacía antes de borrarla.
+     */
+    public long getEmptyRoomGraceMs() {
+        return emptyRoomGraceMs;
+    }
+
+    public long getRoomReaperIntervalMs() {
+        return roomReaperIntervalMs;
+    }
+
+    /**
+     * Dónde se procesan los mensajes: "virtual" (colas por conexión sobre hilos virtuales)
+     * o "inline" (en el hilo de E/S de la conexión).
+     */
+    public String getMessageExecution() {
+        return messageExecution;
+    }
+
+    /**
+     * Nodos del clúster como {@code id=url,id=url}. Sin valor el servidor funciona como nodo único.
+     */
+    public String getClusterNodes() {
+        return clusterNodes;
+    }
+
+    /**
+     * Id de este nodo dentro de {@link #getClusterNodes()}.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Dirección {@code host:puerto} del nodo de reserva al que se replican las salas. Sin valor no se replica.
+     */
+    public String getReplicationStandby() {
+        return replicationStandby;
+    }
+
+    /**
+     * Puerto en el que escucha este nodo cuando arranca como reserva; 0 si arranca como principal.
+     */
+    public int getReplicationListenPort() {
+        return replicationListenPort;
+    }
+
+    /**
+     * Tiempo sin noticias del nodo principal tras el que la reserva toma el relevo.
+     */
+    public long getReplicationPromoteAfterMs() {
+        return replicationPromoteAfterMs;
+    }
+
+    /**
+     * Cambios pendientes de enviar a la réplica antes de darla por desfasada y sincronizarla de nuevo.
+     */
+    public int getReplicationMaxPending() {
+        return replicationMaxPending;
+    }
+
+    /**
+     * Puerto HTTP en el que se exponen las métricas en {@code /metrics}; con 0 no se exponen.
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * Logs de depuración por mensaje que se escriben como mucho cada segundo; el resto se descarta.
+     */
+    public int getLogDebugSamplesPerSecond() {
+        return logDebugSamplesPerSecond;
+    }
+
+    static String readString(String name, String defaultValue) {
+        String value = System.getProperty(name, System.getenv(name));
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    static int readInt(String name, int defaultValue) {
+        return (int) readLong(name, defaultValue);
+    }
+
+    static long readLong(String name, long defaultValue) {
+        String value = System.getProperty(name, System.getenv(name));
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException exception) {
+            log.warn("Valor invalido para {}, usando {}", name, defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.drawtogether.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de buckets fijos. Cada bucket es un {@link LongAdder}, así que registrar un
+ * valor desde muchos hilos a la vez no compite por un mismo contador; los acumulados que
+ * pide Prometheus se calculan al leer.
+ */
+public final class Histogram {
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * {@code bounds} son los límites superiores de cada bucket, en orden creciente; los
+     * valores mayores que el último cuentan solo en +Inf.
+     */
+    public Histogram(long... bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void observe(long value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sum.add(value);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Escribe las series _bucket, _sum y _count; {@code scale} convierte la unidad
+     * registrada en la exportada (por ejemplo de nanosegundos a segundos).
+     */
+    void writeTo(StringBuilder out, String name, String labels, double scale) {
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{").append(labels).append(labels.isEmpty() ? "" : ",")
+                    .append("le=\"").append(MetricsRegistry.format(bounds[i] * scale)).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        cumulative += buckets[bounds.length].sum();
+        out.append(name).append("_bucket{").append(labels).append(labels.isEmpty() ? "" : ",")
+                .append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum").append(MetricsRegistry.braces(labels)).append(' ')
+                .append(MetricsRegistry.format(sum.sum() * scale)).append('\n');
+        out.append(name).append("_count").append(MetricsRegistry.braces(labels)).append(' ')
+                .append(cumulative).append('\n');
+    }
+}
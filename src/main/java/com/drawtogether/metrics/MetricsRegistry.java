@@ -0,0 +1,129 @@
+package com.drawtogether.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Métricas del servidor en formato de texto de Prometheus.
+ *
+ * Las métricas se registran una vez al arrancar; quien las actualiza guarda el
+ * {@link LongAdder} o el {@link Histogram} devuelto y no vuelve a pasar por el registro.
+ * Los valores que ya lleva otro componente se registran como funciones que se leen al exportar.
+ */
+public final class MetricsRegistry {
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private interface Sample {
+        void writeTo(StringBuilder out, String name);
+    }
+
+    private record Family(String type, String help, List<Sample> samples) {
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    public LongAdder counter(String name, String help, String... labels) {
+        LongAdder counter = new LongAdder();
+        counter(name, help, counter::sum, labels);
+        return counter;
+    }
+
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        String rendered = labels(labels);
+        add(name, "counter", help, (out, metric) ->
+                out.append(metric).append(braces(rendered)).append(' ').append(value.getAsLong()).append('\n'));
+    }
+
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        String rendered = labels(labels);
+        add(name, "gauge", help, (out, metric) ->
+                out.append(metric).append(braces(rendered)).append(' ').append(value.getAsLong()).append('\n'));
+    }
+
+    /**
+     * Gauge con una serie por clave, por ejemplo una por sala; las claves se leen al exportar.
+     */
+    public void gaugeFamily(String name, String help, String label, Supplier<Map<String, Long>> values) {
+        addFamily(name, "gauge", help, label, values);
+    }
+
+    /**
+     * Como {@link #gaugeFamily} pero para contadores.
+     */
+    public void counterFamily(String name, String help, String label, Supplier<Map<String, Long>> values) {
+        addFamily(name, "counter", help, label, values);
+    }
+
+    private void addFamily(String name, String type, String help, String label, Supplier<Map<String, Long>> values) {
+        add(name, type, help, (out, metric) -> values.get().forEach((key, value) ->
+                out.append(metric).append('{').append(label).append("=\"").append(escape(key)).append("\"} ")
+                        .append(value).append('\n')));
+    }
+
+    public Histogram histogram(String name, String help, double scale, long[] bounds, String... labels) {
+        Histogram histogram = new Histogram(bounds);
+        String rendered = labels(labels);
+        add(name, "histogram", help, (out, metric) -> histogram.writeTo(out, metric, rendered, scale));
+        return histogram;
+    }
+
+    private synchronized void add(String name, String type, String help, Sample sample) {
+        Family family = families.computeIfAbsent(name, key -> new Family(type, help, new ArrayList<>()));
+        if (!family.type().equals(type)) {
+            throw new IllegalArgumentException("La métrica " + name + " ya está registrada como " + family.type());
+        }
+        family.samples().add(sample);
+    }
+
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type()).append('\n');
+            for (Sample sample : family.samples()) {
+                try {
+                    sample.writeTo(out, name);
+                } catch (RuntimeException e) {
+                    log.warn("Error leyendo la métrica {}: {}", name, e.getMessage());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * {@code labels} alterna nombres y valores: {@code "action", "JOIN_ROOM"}.
+     */
+    private static String labels(String... labels) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (out.length() > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return out.toString();
+    }
+
+    static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,293 @@
+package com.drawtogether.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Historial compactado de una sala: el resultado de aplicar todos los eventos
+ * hasta {@link #getLastSequence()} dejando solo lo que sigue afectando al lienzo.
+ *
+ * CLEAR_CANVAS descarta todo lo anterior. UNDO y REDO son por usuario: UNDO retira
+ * el último trazo visible de quien lo envía (aunque otros hayan dibujado después) y REDO
+ * recupera el último que ese mismo usuario deshizo; un trazo nuevo del usuario vacía su pila
+ * de rehacer. Los clientes tienen que aplicar la misma regla al recibir UNDO y REDO en vivo;
+ * uno con un deshacer global del lienzo acabaría viendo un dibujo distinto del que se guarda.
+ * Los trazos deshechos se conservan al final del snapshot seguidos de sus UNDO, para que un
+ * cliente que reproduzca el historial siga pudiendo rehacerlos.
+ *
+ * Los eventos se guardan en un {@link DrawEventStore} en el orden en que se deben
+ * reproducir; cada trazo queda contiguo. El pliegue trabaja con posiciones de fila y copia
+ * las columnas de un store a otro, sin reconstruir ningún evento.
+ */
+final class CanvasSnapshot {
+
+    private record StrokeRange(String userId, int from, int to, boolean open) {
+    }
+
+    private record UndoneStroke(StrokeRange stroke, int undoIndex) {
+    }
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final DrawEventStore events;
+    private final List<StrokeRange> visible;
+    // Pila de trazos deshechos por usuario, el más reciente primero
+    private final Map<String, List<UndoneStroke>> undone;
+    private final long lastSequence;
+
+    private CanvasSnapshot(DrawEventStore events, List<StrokeRange> visible,
+                           Map<String, List<UndoneStroke>> undone, long lastSequence) {
+        this.events = events;
+        this.visible = visible;
+        this.undone = undone;
+        this.lastSequence = lastSequence;
+    }
+
+    static CanvasSnapshot empty(String roomId) {
+        return empty(roomId, 0);
+    }
+
+    static CanvasSnapshot empty(String roomId, long lastSequence) {
+        return new CanvasSnapshot(new DrawEventStore(roomId), List.of(), Map.of(), lastSequence);
+    }
+
+    /**
+     * Reconstruye un snapshot a partir de sus propios eventos, tal como los devuelve {@link #getEvents()}.
+     */
+    static CanvasSnapshot restore(String roomId, List<DrawEvent> events, long lastSequence) {
+        DrawEventStore source = new DrawEventStore(roomId);
+        events.forEach(source::append);
+        Folding folding = new Folding(null, source);
+        folding.applyAll();
+        return folding.build(roomId, lastSequence);
+    }
+
+    DrawEventStore getEvents() {
+        return events;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Aplica los eventos de {@code tail} sobre este snapshot y devuelve uno nuevo; ni este
+     * snapshot ni el tail cambian, así que se puede llamar sin bloquear la sala mientras el
+     * tail no reciba más eventos. El coste es proporcional al contenido del lienzo más el
+     * tail, no a la sesión completa.
+     */
+    CanvasSnapshot fold(String roomId, DrawEventStore tail) {
+        Folding folding = new Folding(this, tail);
+        folding.load();
+        int applied = folding.applyAll();
+        return folding.build(roomId, lastSequence + applied);
+    }
+
+    /**
+     * Trazo durante el pliegue: un rango de filas del snapshot anterior (vacío si empezó en el
+     * tail) seguido de filas sueltas del tail, que puede tener intercalados otros usuarios.
+     */
+    private static final class Stroke {
+        private final String userId;
+        private final int baseFrom;
+        private final int baseTo;
+        private int[] tailRows = NO_ROWS;
+        private int tailCount;
+        private boolean open;
+        // Fila del UNDO que lo retiró, en el snapshot anterior si undoInBase y si no en el tail
+        private int undoRow = -1;
+        private boolean undoInBase;
+
+        private Stroke(String userId, int baseFrom, int baseTo, boolean open) {
+            this.userId = userId;
+            this.baseFrom = baseFrom;
+            this.baseTo = baseTo;
+            this.open = open;
+        }
+
+        private void addTailRow(int row) {
+            if (tailCount == tailRows.length) {
+                tailRows = Arrays.copyOf(tailRows, Math.max(8, tailCount * 2));
+            }
+            tailRows[tailCount++] = row;
+        }
+    }
+
+    private static final class Folding {
+        private final CanvasSnapshot base;
+        private final DrawEventStore tail;
+        private final List<Stroke> visible = new ArrayList<>();
+        private final Map<String, Stroke> openByUser = new HashMap<>();
+        private final Map<String, Deque<Stroke>> undoneByUser = new LinkedHashMap<>();
+
+        private Folding(CanvasSnapshot base, DrawEventStore tail) {
+            this.base = base;
+            this.tail = tail;
+        }
+
+        private void load() {
+            for (StrokeRange range : base.visible) {
+                Stroke stroke = new Stroke(range.userId(), range.from(), range.to(), range.open());
+                visible.add(stroke);
+                if (stroke.open) {
+                    openByUser.put(stroke.userId, stroke);
+                }
+            }
+            base.undone.forEach((userId, stack) -> {
+                Deque<Stroke> strokes = new ArrayDeque<>();
+                for (UndoneStroke entry : stack) {
+                    StrokeRange range = entry.stroke();
+                    Stroke stroke = new Stroke(range.userId(), range.from(), range.to(), false);
+                    stroke.undoRow = entry.undoIndex();
+                    stroke.undoInBase = true;
+                    strokes.addLast(stroke);
+                }
+                undoneByUser.put(userId, strokes);
+            });
+        }
+
+        /**
+         * Aplica todas las filas del tail y devuelve cuántas eran.
+         */
+        private int applyAll() {
+            int size = tail.size();
+            for (int row = 0; row < size; row++) {
+                apply(row);
+            }
+            return size;
+        }
+
+        private void apply(int row) {
+            String userId = tail.userAt(row);
+            switch (tail.typeAt(row)) {
+                case CLEAR_CANVAS -> {
+                    visible.clear();
+                    openByUser.clear();
+                    undoneByUser.clear();
+                }
+                case UNDO -> undo(userId, row);
+                case REDO -> redo(userId);
+                case STROKE_START -> {
+                    Stroke previous = openByUser.remove(userId);
+                    if (previous != null) {
+                        previous.open = false;
+                    }
+                    startStroke(userId, true).addTailRow(row);
+                }
+                case STROKE_MOVE -> {
+                    Stroke stroke = openByUser.get(userId);
+                    if (stroke == null) {
+                        // Movimiento sin STROKE_START: se trata como un trazo abierto nuevo
+                        stroke = startStroke(userId, true);
+                    }
+                    stroke.addTailRow(row);
+                }
+                case STROKE_END -> {
+                    Stroke stroke = openByUser.remove(userId);
+                    if (stroke == null) {
+                        stroke = startStroke(userId, false);
+                    }
+                    stroke.addTailRow(row);
+                    stroke.open = false;
+                }
+            }
+        }
+
+        private Stroke startStroke(String userId, boolean open) {
+            Stroke stroke = new Stroke(userId, 0, 0, open);
+            visible.add(stroke);
+            if (open) {
+                openByUser.put(userId, stroke);
+            }
+            // Un trazo nuevo invalida lo que el usuario podía rehacer
+            undoneByUser.remove(userId);
+            return stroke;
+        }
+
+        private void undo(String userId, int row) {
+            for (int i = visible.size() - 1; i >= 0; i--) {
+                Stroke stroke = visible.get(i);
+                if (Objects.equals(stroke.userId, userId)) {
+                    visible.remove(i);
+                    if (openByUser.get(userId) == stroke) {
+                        openByUser.remove(userId);
+                    }
+                    stroke.open = false;
+                    stroke.undoRow = row;
+                    stroke.undoInBase = false;
+                    undoneByUser.computeIfAbsent(userId, key -> new ArrayDeque<>()).addFirst(stroke);
+                    return;
+                }
+            }
+        }
+
+        private void redo(String userId) {
+            Deque<Stroke> stack = undoneByUser.get(userId);
+            if (stack == null || stack.isEmpty()) {
+                return;
+            }
+            Stroke stroke = stack.removeFirst();
+            stroke.undoRow = -1;
+            visible.add(stroke);
+        }
+
+        private CanvasSnapshot build(String roomId, long lastSequence) {
+            DrawEventStore store = new DrawEventStore(roomId);
+            List<StrokeRange> visibleRanges = new ArrayList<>(visible.size());
+            for (Stroke stroke : visible) {
+                visibleRanges.add(write(store, stroke));
+            }
+
+            Map<String, List<UndoneStroke>> undoneRanges = new LinkedHashMap<>();
+            for (Map.Entry<String, Deque<Stroke>> entry : undoneByUser.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    continue;
+                }
+                // Al reproducir: trazos del más reciente al más antiguo y luego sus UNDO,
+                // así la pila de rehacer del cliente queda en el mismo orden
+                List<StrokeRange> ranges = new ArrayList<>();
+                for (Stroke stroke : entry.getValue()) {
+                    ranges.add(write(store, stroke));
+                }
+                List<UndoneStroke> stack = new ArrayList<>(ranges.size());
+                Iterator<Stroke> strokes = entry.getValue().descendingIterator();
+                for (int i = ranges.size() - 1; i >= 0; i--) {
+                    Stroke stroke = strokes.next();
+                    int undoIndex = store.size();
+                    store.appendRows(stroke.undoInBase ? base.events : tail, stroke.undoRow, stroke.undoRow + 1);
+                    stack.add(0, new UndoneStroke(ranges.get(i), undoIndex));
+                }
+                undoneRanges.put(entry.getKey(), stack);
+            }
+            return new CanvasSnapshot(store, visibleRanges, undoneRanges, lastSequence);
+        }
+
+        private StrokeRange write(DrawEventStore store, Stroke stroke) {
+            int from = store.size();
+            if (stroke.baseTo > stroke.baseFrom) {
+                store.appendRows(base.events, stroke.baseFrom, stroke.baseTo);
+            }
+            // Las filas seguidas del tail se copian de una vez
+            int i = 0;
+            while (i < stroke.tailCount) {
+                int runStart = stroke.tailRows[i];
+                int runEnd = runStart + 1;
+                i++;
+                while (i < stroke.tailCount && stroke.tailRows[i] == runEnd) {
+                    runEnd++;
+                    i++;
+                }
+                store.appendRows(tail, runStart, runEnd);
+            }
+            return new StrokeRange(stroke.userId, from, store.size(), stroke.open);
+        }
+    }
+}
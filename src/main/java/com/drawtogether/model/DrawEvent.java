@@ -9,14 +9,21 @@ public class DrawEvent {
     private final LocalDateTime timestamp;
     private final DrawEventType type;
     private final DrawData drawData;
+    // Posición del evento en la sala; 0 mientras no se ha añadido al historial
+    private final long sequence;
 
-    public DrawEvent(String id, String roomId, LocalDateTime timestamp, String userId, DrawEventType type, DrawData drawData) {
+    public DrawEvent(String id, String roomId, LocalDateTime timestamp, String userId, DrawEventType type, DrawData drawData, long sequence) {
         this.id = id;
         this.roomId = roomId;
         this.timestamp = timestamp;
         this.userId = userId;
         this.type = type;
         this.drawData = drawData;
+        this.sequence = sequence;
+    }
+
+    public DrawEvent(String id, String roomId, LocalDateTime timestamp, String userId, DrawEventType type, DrawData drawData) {
+        this(id, roomId, timestamp, userId, type, drawData, 0);
     }
 
     public DrawEvent(String id, String roomId, LocalDateTime timestamp, String userId, DrawEventType type) {
@@ -45,4 +52,12 @@ public class DrawEvent {
     public DrawData getDrawData() {
         return drawData;
     }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public DrawEvent withSequence(long sequence) {
+        return new DrawEvent(id, roomId, timestamp, userId, type, drawData, sequence);
+    }
 }
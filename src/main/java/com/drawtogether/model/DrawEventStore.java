@@ -0,0 +1,267 @@
+package com.drawtogether.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Historial de eventos de una sala guardado por columnas en arrays primitivos.
+ *
+ * Cada evento ocupa una fila repartida en bloques de hasta 1024 filas; al crecer solo se
+ * copia el último bloque, nunca el historial completo. Colores, herramientas y usuarios se guardan como códigos de
+ * diccionario, el id como los dos longs del UUID y la fecha como nanosegundos.
+ * Solo se añade al final; los eventos se reconstruyen bajo demanda. Las filas se pueden
+ * copiar de un store a otro ({@link #appendRows}) sin reconstruir los eventos.
+ */
+public class DrawEventStore implements EventSource {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CHUNK_CAPACITY = 16;
+    private static final int NO_DRAW_DATA = -1;
+    // Bytes de una fila en los arrays de un bloque
+    private static final int ROW_BYTES = 4 * Long.BYTES + 1 + 3 * Integer.BYTES + 3 * Double.BYTES;
+    private static final DrawEventType[] EVENT_TYPES = DrawEventType.values();
+
+    private final String roomId;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final StringDictionary users = new StringDictionary();
+    private final StringDictionary colors = new StringDictionary();
+    private final StringDictionary tools = new StringDictionary();
+    // Ids que no son UUID (no los genera el servidor, pero no se pierden)
+    private final Map<Integer, String> irregularIds = new HashMap<>();
+    private int size;
+
+    public DrawEventStore(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public synchronized void append(DrawEvent event) {
+        int row = size & CHUNK_MASK;
+        Chunk chunk = nextChunk(row);
+
+        try {
+            UUID uuid = UUID.fromString(event.getId());
+            chunk.idHigh[row] = uuid.getMostSignificantBits();
+            chunk.idLow[row] = uuid.getLeastSignificantBits();
+        } catch (IllegalArgumentException | NullPointerException e) {
+            irregularIds.put(size, event.getId());
+        }
+
+        LocalDateTime timestamp = event.getTimestamp();
+        chunk.sequences[row] = event.getSequence();
+        chunk.timestamps[row] = timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+        chunk.types[row] = (byte) event.getType().ordinal();
+        chunk.users[row] = users.encode(event.getUserId());
+
+        DrawData drawData = event.getDrawData();
+        if (drawData != null) {
+            chunk.xs[row] = drawData.getX();
+            chunk.ys[row] = drawData.getY();
+            chunk.strokeWidths[row] = drawData.getStrokeWidth();
+            chunk.colors[row] = colors.encode(drawData.getColor());
+            chunk.tools[row] = tools.encode(drawData.getTool());
+        } else {
+            chunk.colors[row] = NO_DRAW_DATA;
+        }
+        size++;
+    }
+
+    /**
+     * Añade las filas [from, to) de {@code source} copiando sus columnas; solo se vuelven a
+     * codificar usuarios, colores y herramientas con los diccionarios de este store.
+     */
+    synchronized void appendRows(DrawEventStore source, int from, int to) {
+        synchronized (source) {
+            if (from < 0 || to > source.size) {
+                throw new IndexOutOfBoundsException("[" + from + ", " + to + ") fuera de " + source.size);
+            }
+            for (int index = from; index < to; index++) {
+                int row = size & CHUNK_MASK;
+                Chunk chunk = nextChunk(row);
+                Chunk sourceChunk = source.chunks.get(index >>> CHUNK_SHIFT);
+                int sourceRow = index & CHUNK_MASK;
+
+                if (!source.irregularIds.isEmpty() && source.irregularIds.containsKey(index)) {
+                    irregularIds.put(size, source.irregularIds.get(index));
+                }
+                chunk.idHigh[row] = sourceChunk.idHigh[sourceRow];
+                chunk.idLow[row] = sourceChunk.idLow[sourceRow];
+                chunk.sequences[row] = sourceChunk.sequences[sourceRow];
+                chunk.timestamps[row] = sourceChunk.timestamps[sourceRow];
+                chunk.types[row] = sourceChunk.types[sourceRow];
+                chunk.users[row] = users.encode(source.users.decode(sourceChunk.users[sourceRow]));
+
+                if (sourceChunk.colors[sourceRow] != NO_DRAW_DATA) {
+                    chunk.xs[row] = sourceChunk.xs[sourceRow];
+                    chunk.ys[row] = sourceChunk.ys[sourceRow];
+                    chunk.strokeWidths[row] = sourceChunk.strokeWidths[sourceRow];
+                    chunk.colors[row] = colors.encode(source.colors.decode(sourceChunk.colors[sourceRow]));
+                    chunk.tools[row] = tools.encode(source.tools.decode(sourceChunk.tools[sourceRow]));
+                } else {
+                    chunk.colors[row] = NO_DRAW_DATA;
+                }
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Bloque en el que se escribe la fila {@code row} (la siguiente), creándolo o haciéndolo crecer.
+     */
+    private Chunk nextChunk(int row) {
+        if (row == 0) {
+            chunks.add(new Chunk(INITIAL_CHUNK_CAPACITY));
+        }
+        Chunk chunk = chunks.get(chunks.size() - 1);
+        if (row == chunk.capacity()) {
+            // Solo el último bloque crece, y nunca más allá de CHUNK_SIZE
+            chunk = chunk.grow(Math.min(CHUNK_SIZE, row * 2));
+            chunks.set(chunks.size() - 1, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Tipo del evento en {@code index}, sin reconstruirlo.
+     */
+    synchronized DrawEventType typeAt(int index) {
+        checkIndex(index);
+        return EVENT_TYPES[chunks.get(index >>> CHUNK_SHIFT).types[index & CHUNK_MASK]];
+    }
+
+    /**
+     * Usuario del evento en {@code index}, sin reconstruirlo.
+     */
+    synchronized String userAt(int index) {
+        checkIndex(index);
+        return users.decode(chunks.get(index >>> CHUNK_SHIFT).users[index & CHUNK_MASK]);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized DrawEvent get(int index) {
+        checkIndex(index);
+        Chunk chunk = chunks.get(index >>> CHUNK_SHIFT);
+        int row = index & CHUNK_MASK;
+
+        String id = !irregularIds.isEmpty() && irregularIds.containsKey(index)
+                ? irregularIds.get(index)
+                : new UUID(chunk.idHigh[row], chunk.idLow[row]).toString();
+        long nanos = chunk.timestamps[row];
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(
+                Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+
+        DrawData drawData = null;
+        if (chunk.colors[row] != NO_DRAW_DATA) {
+            drawData = new DrawData(colors.decode(chunk.colors[row]), chunk.strokeWidths[row],
+                    chunk.xs[row], chunk.ys[row], tools.decode(chunk.tools[row]));
+        }
+        return new DrawEvent(id, roomId, timestamp, users.decode(chunk.users[row]),
+                EVENT_TYPES[chunk.types[row]], drawData, chunk.sequences[row]);
+    }
+
+    @Override
+    public synchronized List<DrawEvent> slice(int from, int to) {
+        List<DrawEvent> events = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            events.add(get(i));
+        }
+        return events;
+    }
+
+    public synchronized List<DrawEvent> toList() {
+        return slice(0, size);
+    }
+
+    /**
+     * Memoria aproximada ocupada por los bloques, sin contar los diccionarios.
+     */
+    public synchronized long estimatedBytes() {
+        long bytes = 0;
+        for (Chunk chunk : chunks) {
+            bytes += (long) chunk.capacity() * ROW_BYTES;
+        }
+        return bytes;
+    }
+
+    private static final class Chunk {
+        private final long[] idHigh;
+        private final long[] idLow;
+        private final long[] sequences;
+        private final long[] timestamps;
+        private final byte[] types;
+        private final int[] users;
+        private final double[] xs;
+        private final double[] ys;
+        private final double[] strokeWidths;
+        private final int[] colors;
+        private final int[] tools;
+
+        private Chunk(int capacity) {
+            idHigh = new long[capacity];
+            idLow = new long[capacity];
+            sequences = new long[capacity];
+            timestamps = new long[capacity];
+            types = new byte[capacity];
+            users = new int[capacity];
+            xs = new double[capacity];
+            ys = new double[capacity];
+            strokeWidths = new double[capacity];
+            colors = new int[capacity];
+            tools = new int[capacity];
+        }
+
+        private int capacity() {
+            return types.length;
+        }
+
+        private Chunk grow(int capacity) {
+            Chunk grown = new Chunk(capacity);
+            int length = capacity();
+            System.arraycopy(idHigh, 0, grown.idHigh, 0, length);
+            System.arraycopy(idLow, 0, grown.idLow, 0, length);
+            System.arraycopy(sequences, 0, grown.sequences, 0, length);
+            System.arraycopy(timestamps, 0, grown.timestamps, 0, length);
+            System.arraycopy(types, 0, grown.types, 0, length);
+            System.arraycopy(users, 0, grown.users, 0, length);
+            System.arraycopy(xs, 0, grown.xs, 0, length);
+            System.arraycopy(ys, 0, grown.ys, 0, length);
+            System.arraycopy(strokeWidths, 0, grown.strokeWidths, 0, length);
+            System.arraycopy(colors, 0, grown.colors, 0, length);
+            System.arraycopy(tools, 0, grown.tools, 0, length);
+            return grown;
+        }
+    }
+
+    private static final class StringDictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        private String decode(int code) {
+            return values.get(code);
+        }
+    }
+}
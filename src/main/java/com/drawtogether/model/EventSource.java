@@ -0,0 +1,20 @@
+package com.drawtogether.model;
+
+import java.util.List;
+
+/**
+ * Origen de eventos de historial accesible por posición, en memoria o en disco.
+ */
+public interface EventSource {
+
+    /**
+     * Reconstruye los eventos del rango [from, to) en orden.
+     */
+    List<DrawEvent> slice(int from, int to);
+
+    /**
+     * Libera lo que tenga abierto el origen, como un fichero; los que están en memoria no hacen nada.
+     */
+    default void close() {
+    }
+}
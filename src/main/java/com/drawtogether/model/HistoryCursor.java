@@ -0,0 +1,83 @@
+package com.drawtogether.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectura por partes del historial de una sala tal y como estaba al abrir el cursor.
+ *
+ * Los orígenes son de solo añadir y la compactación crea stores nuevos en lugar de
+ * modificar los existentes, así que basta con recordar qué rango de cada origen se
+ * incluye: los eventos se reconstruyen solo cuando se pide cada bloque.
+ */
+public class HistoryCursor implements AutoCloseable {
+
+    record Segment(EventSource source, int from, int to) {
+    }
+
+    private final List<Segment> segments;
+    private final int size;
+    private final long sequence;
+    private int segmentIndex;
+    private int positionInSegment;
+    private int position;
+
+    HistoryCursor(List<Segment> segments, long sequence) {
+        this.segments = segments;
+        this.size = segments.stream().mapToInt(segment -> segment.to() - segment.from()).sum();
+        this.sequence = sequence;
+    }
+
+    /**
+     * Cursor sobre el rango [from, to) de un único origen.
+     */
+    public static HistoryCursor over(EventSource source, int from, int to, long sequence) {
+        return new HistoryCursor(List.of(new Segment(source, from, to)), sequence);
+    }
+
+    public boolean hasNext() {
+        return position < size;
+    }
+
+    /**
+     * Devuelve hasta {@code maxEvents} eventos a partir de la posición actual.
+     */
+    public List<DrawEvent> next(int maxEvents) {
+        List<DrawEvent> events = new ArrayList<>(Math.min(maxEvents, size - position));
+        while (events.size() < maxEvents && segmentIndex < segments.size()) {
+            Segment segment = segments.get(segmentIndex);
+            int from = segment.from() + positionInSegment;
+            int to = Math.min(segment.to(), from + maxEvents - events.size());
+            events.addAll(segment.source().slice(from, to));
+            positionInSegment += to - from;
+            if (to >= segment.to()) {
+                segmentIndex++;
+                positionInSegment = 0;
+            }
+        }
+        position += events.size();
+        return events;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Libera los orígenes que leen de disco; hace falta si el cursor no se recorre hasta el final.
+     */
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.source().close();
+        }
+    }
+
+    /**
+     * Secuencia del último evento incluido en el cursor; los eventos en vivo
+     * continúan a partir de la siguiente.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+}
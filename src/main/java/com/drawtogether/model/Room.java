@@ -2,42 +2,217 @@ package com.drawtogether.model;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 public class Room {
+    // Eventos acumulados tras el último snapshot que disparan una compactación
+    private static final int MIN_COMPACTION_TAIL = 2048;
+    private static final int CLOSED = -1;
+    private static final AtomicInteger COMPACTOR_THREADS = new AtomicInteger();
+    // Hilos compartidos por todas las salas que pliegan los tails fuera del lock de cada una
+    private static final ExecutorService COMPACTOR = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                Thread thread = new Thread(runnable, "room-compactor-" + COMPACTOR_THREADS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
     private final String id;
     private final String name;
     private final Set<String> participants;
-    private final List<DrawEvent> drawEvents;
+    private CanvasSnapshot snapshot;
+    private DrawEventStore tail;
+    // Tail que se está plegando en segundo plano; va entre el snapshot y el tail. null si no hay
+    private DrawEventStore compactingTail;
+    // Tail anterior a la última compactación; junto con el actual forma la ventana para RESUME
+    private DrawEventStore previousTail;
+    // Historial en disco mientras la sala está inactiva; null si está en memoria
+    private SpilledHistory spilled;
+    private int spilledEvents;
+    private volatile long lastActivityNanos = System.nanoTime();
+    // Plazas ocupadas; CLOSED cuando la sala está cerrada y ya no admite a nadie
+    private final AtomicInteger occupiedSlots = new AtomicInteger();
+    private volatile long emptySinceNanos = System.nanoTime();
     private final LocalDateTime createdAt;
     private final int maxParticipants;
 
     public Room(String id, String name, int maxParticipants) {
+        this(id, name, maxParticipants, LocalDateTime.now());
+    }
+
+    public Room(String id, String name, int maxParticipants, LocalDateTime createdAt) {
         this.id = id;
         this.name = name;
         this.maxParticipants = maxParticipants;
         this.participants = ConcurrentHashMap.newKeySet();
-        this.drawEvents = Collections.synchronizedList(new ArrayList<>());
-        this.createdAt = LocalDateTime.now();
+        this.snapshot = CanvasSnapshot.empty(id);
+        this.tail = new DrawEventStore(id);
+        this.previousTail = new DrawEventStore(id);
+        this.createdAt = createdAt;
     }
 
+    /**
+     * Reserva una plaza con CAS sobre el contador y después añade al usuario; si ya estaba
+     * dentro, la plaza se devuelve. El contador nunca pasa de {@code maxParticipants}.
+     */
     public boolean addParticipant(String userId) {
-        if (participants.size() >= maxParticipants){
-            return false;
+        while (true) {
+            int occupied = occupiedSlots.get();
+            if (occupied == CLOSED || occupied >= maxParticipants) {
+                return false;
+            }
+            if (occupiedSlots.compareAndSet(occupied, occupied + 1)) {
+                break;
+            }
+        }
+        if (participants.add(userId)) {
+            return true;
         }
-        return participants.add(userId);
+        releaseSlot();
+        return false;
+    }
+
+    public boolean hasParticipant(String userId) {
+        return participants.contains(userId);
     }
 
     public boolean removeParticipant(String userId){
-        return participants.remove(userId);
+        if (!participants.remove(userId)) {
+            return false;
+        }
+        releaseSlot();
+        return true;
+    }
+
+    private void releaseSlot() {
+        while (true) {
+            int occupied = occupiedSlots.get();
+            if (occupied == CLOSED) {
+                return;
+            }
+            if (occupied == 1) {
+                // Se marca antes de dejar el contador a 0 para que el reaper nunca vea la sala
+                // vacía con la fecha de una vez anterior
+                emptySinceNanos = System.nanoTime();
+            }
+            if (occupiedSlots.compareAndSet(occupied, occupied - 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Cierra la sala si sigue vacía desde antes de {@code emptyBeforeNanos}. Una sala
+     * cerrada ya no admite participantes, así que se puede borrar sin que nadie entre entre medias.
+     */
+    public boolean closeIfEmptySince(long emptyBeforeNanos) {
+        if (occupiedSlots.get() != 0 || emptySinceNanos - emptyBeforeNanos > 0) {
+            return false;
+        }
+        return occupiedSlots.compareAndSet(0, CLOSED);
+    }
+
+    /**
+     * Cierra la sala aunque tenga participantes; devuelve false si ya estaba cerrada.
+     */
+    public boolean close() {
+        return occupiedSlots.getAndSet(CLOSED) != CLOSED;
+    }
+
+    /**
+     * Si la sala está vacía, el periodo de gracia antes de borrarla vuelve a contar desde ahora.
+     */
+    public void restartEmptyGrace() {
+        if (occupiedSlots.get() == 0) {
+            emptySinceNanos = System.nanoTime();
+        }
     }
 
-    public void addDrawEvent(DrawEvent event){
-        drawEvents.add(event);
+    public boolean isClosed() {
+        return occupiedSlots.get() == CLOSED;
+    }
+
+    /**
+     * Añade el evento al historial asignándole el siguiente número de secuencia de la sala.
+     */
+    public synchronized DrawEvent addDrawEvent(DrawEvent event){
+        ensureResident();
+        lastActivityNanos = System.nanoTime();
+        DrawEvent sequenced = event.withSequence(getLastSequence() + 1);
+        tail.append(sequenced);
+        // El umbral crece con el lienzo para que el coste de compactar quede amortizado por evento
+        if (compactingTail == null && tail.size() >= Math.max(MIN_COMPACTION_TAIL, snapshot.getEvents().size() / 2)) {
+            compactInBackground();
+        }
+        return sequenced;
+    }
+
+    /**
+     * Cierra el tail actual y lo pliega en otro hilo mientras los eventos nuevos van a un tail
+     * vacío. Bajo el lock solo se intercambian referencias: el snapshot y el tail cerrado ya
+     * no cambian, y el resultado sustituye al snapshot al terminar si nada lo ha reemplazado antes.
+     */
+    private void compactInBackground() {
+        CanvasSnapshot base = snapshot;
+        DrawEventStore sealed = tail;
+        compactingTail = sealed;
+        tail = new DrawEventStore(id);
+        try {
+            COMPACTOR.execute(() -> finishCompaction(sealed, base.fold(id, sealed)));
+        } catch (RejectedExecutionException e) {
+            compact();
+        }
+    }
+
+    private synchronized void finishCompaction(DrawEventStore sealed, CanvasSnapshot folded) {
+        if (compactingTail != sealed) {
+            // compact(), spill() o restoreHistory() ya cambiaron el snapshot entre medias
+            return;
+        }
+        snapshot = folded;
+        previousTail = sealed;
+        compactingTail = null;
+    }
+
+    /**
+     * Añade un evento que ya trae su secuencia sin comprobar si hay que compactar, para
+     * reconstruir la sala desde disco; al terminar se compacta una sola vez con {@link #compact()}.
+     */
+    public synchronized void replayEvent(DrawEvent event) {
+        ensureResident();
+        if (event.getSequence() != getLastSequence() + 1) {
+            throw new IllegalStateException("Secuencia " + event.getSequence()
+                    + " fuera de orden, se esperaba " + (getLastSequence() + 1));
+        }
+        tail.append(event);
+    }
+
+    /**
+     * Pliega en el snapshot todo lo pendiente, descartando los trazos borrados o deshechos.
+     * A diferencia de la compactación que dispara {@link #addDrawEvent}, se hace en el hilo
+     * que llama y con la sala bloqueada; si había un pliegue en segundo plano, se descarta.
+     */
+    public synchronized void compact() {
+        if (compactingTail != null) {
+            snapshot = snapshot.fold(id, compactingTail);
+            previousTail = compactingTail;
+            compactingTail = null;
+        }
+        if (tail.size() == 0) {
+            return;
+        }
+        snapshot = snapshot.fold(id, tail);
+        previousTail = tail;
+        tail = new DrawEventStore(id);
     }
 
     public String getId() {
@@ -52,8 +227,208 @@ public class Room {
         return new HashSet<>(participants);
     }
 
-    public List<DrawEvent> getDrawEvents() {
-        return new ArrayList<>(drawEvents);
+    /**
+     * Historial a reproducir al unirse: snapshot compactado más los eventos posteriores.
+     */
+    public synchronized List<DrawEvent> getDrawEvents() {
+        ensureResident();
+        List<DrawEvent> events = new ArrayList<>(getDrawEventCount());
+        events.addAll(snapshot.getEvents().toList());
+        if (compactingTail != null) {
+            events.addAll(compactingTail.toList());
+        }
+        events.addAll(tail.toList());
+        return events;
+    }
+
+    public synchronized int getDrawEventCount() {
+        ensureResident();
+        return snapshot.getEvents().size() + compactingSize() + tail.size();
+    }
+
+    /**
+     * Eventos que recibiría quien se une ahora ({@code openHistory().size()}): snapshot
+     * compactado más lo pendiente de compactar. No recarga el historial si está en disco
+     * ni crea ningún cursor.
+     */
+    public synchronized int getHistorySize() {
+        if (spilled != null) {
+            return spilledEvents;
+        }
+        return snapshot.getEvents().size() + compactingSize() + tail.size();
+    }
+
+    private int compactingSize() {
+        return compactingTail != null ? compactingTail.size() : 0;
+    }
+
+    /**
+     * Segmentos del historial completo: snapshot, tail en compactación (si lo hay) y tail.
+     */
+    private List<HistoryCursor.Segment> historySegments() {
+        DrawEventStore snapshotEvents = snapshot.getEvents();
+        List<HistoryCursor.Segment> segments = new ArrayList<>(3);
+        segments.add(new HistoryCursor.Segment(snapshotEvents, 0, snapshotEvents.size()));
+        if (compactingTail != null) {
+            segments.add(new HistoryCursor.Segment(compactingTail, 0, compactingTail.size()));
+        }
+        segments.add(new HistoryCursor.Segment(tail, 0, tail.size()));
+        return segments;
+    }
+
+    /**
+     * Cursor sobre el historial actual para enviarlo por partes sin copiarlo entero. Si el
+     * historial está en disco no se recarga: se lee del fichero a medida que se recorre el
+     * cursor, así que hay que cerrarlo si no se llega al final.
+     */
+    public synchronized HistoryCursor openHistory() {
+        lastActivityNanos = System.nanoTime();
+        if (spilled != null) {
+            return spilled.open(getLastSequence());
+        }
+        return new HistoryCursor(historySegments(), getLastSequence());
+    }
+
+    /**
+     * Como {@link #openHistory()}, pero sin contar como actividad de la sala: las copias que
+     * se hacen en segundo plano no deben impedir que se guarde en disco.
+     */
+    public synchronized HistoryCursor openStoredHistory() {
+        if (spilled != null) {
+            return spilled.open(getLastSequence());
+        }
+        return new HistoryCursor(historySegments(), getLastSequence());
+    }
+
+    /**
+     * Cursor con los eventos posteriores a {@code lastSequence}, sin compactar, si siguen
+     * dentro de la ventana retenida (el último tail plegado, el que se está plegando y el
+     * actual). Si quedan fuera, el cliente tiene que recibir el historial completo.
+     */
+    public synchronized Optional<HistoryCursor> openHistorySince(long lastSequence) {
+        long previousTailFirstSequence = snapshot.getLastSequence() + 1 - previousTail.size();
+        if (lastSequence < previousTailFirstSequence - 1 || lastSequence > getLastSequence()) {
+            return Optional.empty();
+        }
+
+        List<HistoryCursor.Segment> segments = new ArrayList<>(3);
+        long firstSequence = previousTailFirstSequence;
+        for (DrawEventStore store : compactingTail != null
+                ? List.of(previousTail, compactingTail, tail) : List.of(previousTail, tail)) {
+            int size = store.size();
+            int from = (int) Math.min(size, Math.max(0, lastSequence + 1 - firstSequence));
+            segments.add(new HistoryCursor.Segment(store, from, size));
+            firstSequence += size;
+        }
+        return Optional.of(new HistoryCursor(segments, getLastSequence()));
+    }
+
+    /**
+     * Compacta el historial y lo entrega a {@code writer} para guardarlo fuera de memoria.
+     * Se vuelve a cargar en cuanto se necesita. Si {@code writer} falla la sala no cambia.
+     */
+    public synchronized boolean spill(Function<List<DrawEvent>, SpilledHistory> writer) {
+        if (spilled != null) {
+            return false;
+        }
+        compact();
+        spilled = writer.apply(snapshot.getEvents().toList());
+        spilledEvents = snapshot.getEvents().size();
+        // Solo se conserva la secuencia; la ventana de RESUME se pierde con el historial
+        snapshot = CanvasSnapshot.empty(id, snapshot.getLastSequence());
+        tail = new DrawEventStore(id);
+        previousTail = new DrawEventStore(id);
+        return true;
+    }
+
+    /**
+     * Sustituye el historial por uno ya compactado que termina en {@code lastSequence}, como
+     * el que envía el nodo principal a una réplica al sincronizarla.
+     */
+    public synchronized void restoreHistory(List<DrawEvent> events, long lastSequence) {
+        if (spilled != null) {
+            spilled.discard();
+            spilled = null;
+        }
+        snapshot = CanvasSnapshot.restore(id, events, lastSequence);
+        tail = new DrawEventStore(id);
+        compactingTail = null;
+        previousTail = new DrawEventStore(id);
+        lastActivityNanos = System.nanoTime();
+    }
+
+    /**
+     * Vuelve a cargar en memoria el historial que está en disco. La lectura y el pliegue se
+     * hacen sin bloquear la sala, para poder llamarlo desde el hilo de un mensaje antes de
+     * que la sala lo necesite; si entre medias otro hilo lo recargó, lo leído se descarta.
+     */
+    public void loadHistory() {
+        SpilledHistory stored;
+        long lastSequence;
+        synchronized (this) {
+            stored = spilled;
+            lastSequence = snapshot.getLastSequence();
+        }
+        if (stored == null) {
+            return;
+        }
+        CanvasSnapshot restored;
+        try {
+            restored = CanvasSnapshot.restore(id, stored.load(), lastSequence);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (spilled != stored) {
+                    // Ya se recargó y el fichero se borró mientras se leía
+                    return;
+                }
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (spilled != stored) {
+                return;
+            }
+            snapshot = restored;
+            spilled.discard();
+            spilled = null;
+            lastActivityNanos = System.nanoTime();
+        }
+    }
+
+    private void ensureResident() {
+        if (spilled == null) {
+            return;
+        }
+        snapshot = CanvasSnapshot.restore(id, spilled.load(), snapshot.getLastSequence());
+        spilled.discard();
+        spilled = null;
+    }
+
+    public synchronized boolean isSpilled() {
+        return spilled != null;
+    }
+
+    /**
+     * Memoria aproximada del historial en memoria; 0 si está en disco.
+     */
+    public synchronized long getResidentHistoryBytes() {
+        return snapshot.getEvents().estimatedBytes() + tail.estimatedBytes() + previousTail.estimatedBytes()
+                + (compactingTail != null ? compactingTail.estimatedBytes() : 0);
+    }
+
+    /**
+     * Instante ({@link System#nanoTime()}) del último evento o de la última lectura del historial.
+     */
+    public long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    /**
+     * Secuencia del último evento recibido por la sala (0 si no hay ninguno),
+     * contando también los que ya se compactaron.
+     */
+    public synchronized long getLastSequence() {
+        return snapshot.getLastSequence() + compactingSize() + tail.size();
     }
 
     public LocalDateTime getCreatedAt() {
@@ -65,7 +440,7 @@ public class Room {
     }
 
     public int getCurrentParticipantsCount() {
-        return participants.size();
+        return Math.max(0, occupiedSlots.get());
     }
 
 
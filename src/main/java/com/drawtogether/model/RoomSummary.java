@@ -0,0 +1,15 @@
+package com.drawtogether.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Datos de una sala que se muestran en el lobby, copiados en el momento de crearla.
+ */
+public record RoomSummary(String id, String name, int maxParticipants, int currentParticipantsCount,
+                          LocalDateTime createdAt) {
+
+    public static RoomSummary of(Room room) {
+        return new RoomSummary(room.getId(), room.getName(), room.getMaxParticipants(),
+                room.getCurrentParticipantsCount(), room.getCreatedAt());
+    }
+}
@@ -0,0 +1,25 @@
+package com.drawtogether.model;
+
+import java.util.List;
+
+/**
+ * Historial compactado de una sala que se sacó de memoria.
+ */
+public interface SpilledHistory {
+
+    /**
+     * Lee los eventos en el orden en que se guardaron.
+     */
+    List<DrawEvent> load();
+
+    /**
+     * Abre los eventos guardados para leerlos en orden sin volver a cargarlos en la sala.
+     * Hay que cerrar el cursor si no se llega al final.
+     */
+    HistoryCursor open(long sequence);
+
+    /**
+     * Libera el almacenamiento; se llama después de volver a cargar el historial.
+     */
+    void discard();
+}
@@ -0,0 +1,69 @@
+package com.drawtogether.repository;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import com.drawtogether.model.DrawData;
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.DrawEventType;
+
+/**
+ * Formato binario de un evento en los flujos de datos: historiales guardados en disco y
+ * réplica a otro nodo. El id de la sala no se escribe; lo aporta quien lee.
+ */
+final class DrawEventStreams {
+    private static final DrawEventType[] EVENT_TYPES = DrawEventType.values();
+
+    private DrawEventStreams() {
+    }
+
+    static void write(DataOutputStream out, DrawEvent event) throws IOException {
+        LocalDateTime timestamp = event.getTimestamp();
+        out.writeLong(event.getSequence());
+        out.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano());
+        out.writeByte(event.getType().ordinal());
+        writeString(out, event.getId());
+        writeString(out, event.getUserId());
+        DrawData drawData = event.getDrawData();
+        out.writeBoolean(drawData != null);
+        if (drawData != null) {
+            out.writeDouble(drawData.getX());
+            out.writeDouble(drawData.getY());
+            out.writeDouble(drawData.getStrokeWidth());
+            writeString(out, drawData.getColor());
+            writeString(out, drawData.getTool());
+        }
+    }
+
+    static DrawEvent read(DataInputStream in, String roomId) throws IOException {
+        long sequence = in.readLong();
+        long nanos = in.readLong();
+        DrawEventType type = EVENT_TYPES[in.readByte()];
+        String id = readString(in);
+        String userId = readString(in);
+        DrawData drawData = null;
+        if (in.readBoolean()) {
+            double x = in.readDouble();
+            double y = in.readDouble();
+            double strokeWidth = in.readDouble();
+            drawData = new DrawData(readString(in), strokeWidth, x, y, readString(in));
+        }
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(
+                Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+        return new DrawEvent(id, roomId, timestamp, userId, type, drawData, sequence);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
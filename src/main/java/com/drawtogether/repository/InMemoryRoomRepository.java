@@ -1,17 +1,53 @@
 package com.drawtogether.repository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.StringJoiner;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import com.drawtogether.model.Room;
+import com.drawtogether.model.RoomSummary;
 
 public class InMemoryRoomRepository implements RoomRepository {
+    // Claves de los índices: el valor por el que se ordena y el id para desempatar
+    private record CreatedKey(LocalDateTime createdAt, String id) {
+    }
+
+    private record NameKey(String name, String id) {
+    }
+
+    private static final String CREATED_MODE = "created";
+    private static final String NAME_MODE = "name";
+
+    private static final Comparator<CreatedKey> CREATED_ORDER =
+            Comparator.comparing(CreatedKey::createdAt).thenComparing(CreatedKey::id);
+    private static final Comparator<NameKey> NAME_ORDER =
+            Comparator.comparing(NameKey::name).thenComparing(NameKey::id);
+
     private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<CreatedKey, Room> byCreatedAt = new ConcurrentSkipListMap<>(CREATED_ORDER);
+    private final ConcurrentSkipListMap<NameKey, Room> byName = new ConcurrentSkipListMap<>(NAME_ORDER);
     
     @Override
     public Room save(Room room) {
-        rooms.put(room.getId(), room);
+        if (rooms.put(room.getId(), room) == null) {
+            // Nombre y fecha de creación no cambian: solo hace falta indexar al insertar
+            byCreatedAt.put(createdKey(room), room);
+            byName.put(nameKey(room), room);
+        }
         return room;
     }
 
@@ -27,11 +63,112 @@ public class InMemoryRoomRepository implements RoomRepository {
 
     @Override
     public boolean deleteById(String id) {
-        return rooms.remove(id) != null;
+        Room room = rooms.remove(id);
+        if (room == null) {
+            return false;
+        }
+        byCreatedAt.remove(createdKey(room));
+        byName.remove(nameKey(room));
+        return true;
     }
 
     @Override
     public boolean existsById(String id) {
         return rooms.containsKey(id);
     }
+
+    /**
+     * Recorre el índice que corresponde a la consulta a partir del cursor, de modo que el
+     * coste depende del tamaño de la página (más las salas llenas que se saltan con el filtro).
+     */
+    @Override
+    public RoomPage findPage(RoomQuery query) {
+        String prefix = query.namePrefix() == null ? "" : query.namePrefix().trim().toLowerCase(Locale.ROOT);
+        String mode = prefix.isEmpty() ? CREATED_MODE : NAME_MODE;
+        String[] after = query.cursor() == null ? null : decodeCursor(query.cursor(), mode, prefix);
+        int limit = Math.max(1, query.limit());
+
+        if (prefix.isEmpty()) {
+            NavigableMap<CreatedKey, Room> range = byCreatedAt;
+            if (after != null) {
+                try {
+                    range = byCreatedAt.tailMap(new CreatedKey(LocalDateTime.parse(after[0]), after[1]), false);
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Cursor inválido", e);
+                }
+            }
+            return collect(range, query.freeSlotsOnly(), limit,
+                    key -> encodeCursor(mode, prefix, key.createdAt().toString(), key.id()), key -> true);
+        }
+
+        NavigableMap<NameKey, Room> range;
+        if (after != null) {
+            range = byName.tailMap(new NameKey(after[0], after[1]), false);
+        } else {
+            range = byName.tailMap(new NameKey(prefix, ""), true);
+        }
+        return collect(range, query.freeSlotsOnly(), limit,
+                key -> encodeCursor(mode, prefix, key.name(), key.id()), key -> key.name().startsWith(prefix));
+    }
+
+    private static <K> RoomPage collect(NavigableMap<K, Room> range, boolean freeSlotsOnly, int limit,
+                                        Function<K, String> cursorOf, Predicate<K> inRange) {
+        List<RoomSummary> page = new ArrayList<>(Math.min(limit, 64));
+        K last = null;
+        for (Map.Entry<K, Room> entry : range.entrySet()) {
+            if (!inRange.test(entry.getKey())) {
+                // El índice por nombre está ordenado: al dejar de coincidir el prefijo no quedan más
+                return new RoomPage(page, null);
+            }
+            if (page.size() == limit) {
+                return new RoomPage(page, cursorOf.apply(last));
+            }
+            RoomSummary summary = RoomSummary.of(entry.getValue());
+            if (freeSlotsOnly && summary.currentParticipantsCount() >= summary.maxParticipants()) {
+                continue;
+            }
+            page.add(summary);
+            last = entry.getKey();
+        }
+        return new RoomPage(page, null);
+    }
+
+    private static CreatedKey createdKey(Room room) {
+        return new CreatedKey(room.getCreatedAt(), room.getId());
+    }
+
+    private static NameKey nameKey(Room room) {
+        return new NameKey(room.getName().toLowerCase(Locale.ROOT), room.getId());
+    }
+
+    /**
+     * El cursor lleva, además de la clave de la última sala, el orden y el prefijo de la
+     * consulta que lo generó: con otro prefijo apuntaría a otro punto del índice. Cada campo
+     * va en Base64 por separado, así los nombres pueden contener cualquier carácter.
+     */
+    private static String encodeCursor(String mode, String prefix, String value, String id) {
+        StringJoiner cursor = new StringJoiner(".");
+        for (String field : new String[] {mode, prefix, value, id}) {
+            cursor.add(Base64.getUrlEncoder().withoutPadding().encodeToString(field.getBytes(StandardCharsets.UTF_8)));
+        }
+        return cursor.toString();
+    }
+
+    /**
+     * Devuelve el valor y el id de la última sala de la página anterior.
+     */
+    private static String[] decodeCursor(String cursor, String mode, String prefix) {
+        String[] fields = cursor.split("\\.", -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        for (int i = 0; i < fields.length; i++) {
+            // Base64 lanza IllegalArgumentException si el campo no es válido
+            fields[i] = new String(Base64.getUrlDecoder().decode(fields[i]), StandardCharsets.UTF_8);
+        }
+        if (!fields[0].equals(mode) || !fields[1].equals(prefix)) {
+            throw new IllegalArgumentException("El cursor es de otra consulta");
+        }
+        return new String[] {fields[2], fields[3]};
+    }
 }
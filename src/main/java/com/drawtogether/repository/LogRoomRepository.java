@@ -0,0 +1,201 @@
+package com.drawtogether.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.HistoryCursor;
+import com.drawtogether.model.Room;
+
+/**
+ * Repositorio que además guarda los eventos de cada sala en un {@link RoomLog} en disco.
+ *
+ * Las salas y sus índices siguen en memoria; el log permite reconstruirlas al arrancar
+ * y servir reanudaciones que ya no están en el historial en memoria. Al unirse a una sala
+ * el historial se envía siempre desde el snapshot compactado en memoria, no desde el log,
+ * que guarda también los trazos borrados o deshechos. Los segmentos se sincronizan con el
+ * disco cada {@code flushIntervalMs}, una vez por intervalo para todos los eventos escritos
+ * en él, y cada {@code CHECKPOINT_INTERVAL_MS} se guarda un checkpoint de las salas cuyo
+ * log ha crecido lo suficiente para borrar sus segmentos antiguos.
+ */
+public class LogRoomRepository implements RoomRepository {
+    private static final Logger log = LoggerFactory.getLogger(LogRoomRepository.class);
+    private static final long CHECKPOINT_INTERVAL_MS = 5_000;
+
+    private final InMemoryRoomRepository rooms = new InMemoryRoomRepository();
+    private final Map<String, RoomLog> logs = new ConcurrentHashMap<>();
+    private final Path directory;
+    private final int segmentBytes;
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    public LogRoomRepository(Path directory, int segmentBytes, long flushIntervalMs) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el log de salas en " + directory, e);
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "room-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::checkpoint, CHECKPOINT_INTERVAL_MS, CHECKPOINT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void recover() throws IOException {
+        List<Path> roomDirectories;
+        try (Stream<Path> list = Files.list(directory)) {
+            roomDirectories = list.filter(Files::isDirectory).toList();
+        }
+        for (Path roomDirectory : roomDirectories) {
+            try {
+                RoomLog roomLog = RoomLog.open(roomDirectory, segmentBytes);
+                Room room = roomLog.newRoom();
+                // Un pliegue para el checkpoint y otro para lo escrito después, sin compactar por el camino
+                room.restoreHistory(roomLog.readCheckpoint(), roomLog.getCheckpointSequence());
+                roomLog.replay(room::replayEvent);
+                room.compact();
+                rooms.save(room);
+                logs.put(room.getId(), roomLog);
+                log.info("Sala recuperada del log: {} ({} eventos)", room.getId(), roomLog.getLastSequence());
+            } catch (IOException | RuntimeException e) {
+                log.error("No se pudo recuperar la sala en {}: {}", roomDirectory, e.getMessage());
+            }
+        }
+        // Nadie ha podido volver a entrar todavía: el periodo de gracia empieza al terminar de recuperar
+        for (Room room : rooms.findAll()) {
+            room.restartEmptyGrace();
+        }
+    }
+
+    @Override
+    public Room save(Room room) {
+        if (!closed && !logs.containsKey(room.getId())) {
+            try {
+                logs.put(room.getId(), RoomLog.create(directory.resolve(room.getId()), room, segmentBytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo crear el log de la sala " + room.getId(), e);
+            }
+        }
+        return rooms.save(room);
+    }
+
+    @Override
+    public Optional<Room> findById(String id) {
+        return rooms.findById(id);
+    }
+
+    @Override
+    public Collection<Room> findAll() {
+        return rooms.findAll();
+    }
+
+    @Override
+    public boolean deleteById(String id) {
+        boolean deleted = rooms.deleteById(id);
+        RoomLog roomLog = logs.remove(id);
+        // Tras cerrar el repositorio las salas se quitan de memoria pero se conservan en disco
+        if (roomLog != null && !closed) {
+            try {
+                roomLog.delete();
+            } catch (IOException e) {
+                log.warn("No se pudo borrar el log de la sala {}: {}", id, e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return rooms.existsById(id);
+    }
+
+    @Override
+    public RoomPage findPage(RoomQuery query) {
+        return rooms.findPage(query);
+    }
+
+    @Override
+    public void appendEvent(Room room, DrawEvent event) {
+        RoomLog roomLog = logs.get(room.getId());
+        if (roomLog == null || closed) {
+            return;
+        }
+        try {
+            roomLog.append(event);
+        } catch (IOException e) {
+            // El evento sigue en memoria, pero no se recuperará tras un reinicio
+            log.error("Error escribiendo en el log de la sala {}: {}", room.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public Optional<HistoryCursor> readHistorySince(String roomId, long lastSequence) {
+        RoomLog roomLog = logs.get(roomId);
+        if (roomLog == null || lastSequence < roomLog.getFirstSequence() - 1 || lastSequence > roomLog.getLastSequence()) {
+            return Optional.empty();
+        }
+        long last = roomLog.getLastSequence();
+        return Optional.of(HistoryCursor.over(roomLog.readFrom(lastSequence + 1), 0, (int) (last - lastSequence), last));
+    }
+
+    private void flush() {
+        for (RoomLog roomLog : logs.values()) {
+            roomLog.force();
+        }
+    }
+
+    private void checkpoint() {
+        for (Map.Entry<String, RoomLog> entry : logs.entrySet()) {
+            RoomLog roomLog = entry.getValue();
+            if (closed || !roomLog.needsCheckpoint()) {
+                continue;
+            }
+            Optional<Room> room = rooms.findById(entry.getKey());
+            if (room.isEmpty()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try (HistoryCursor history = room.get().openStoredHistory()) {
+                roomLog.checkpoint(history);
+                log.debug("Checkpoint de la sala {} hasta la secuencia {} en {} ms", entry.getKey(),
+                        history.getSequence(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (IOException | RuntimeException e) {
+                log.warn("No se pudo guardar el checkpoint de la sala {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        flusher.shutdown();
+        for (RoomLog roomLog : logs.values()) {
+            try {
+                roomLog.close();
+            } catch (IOException e) {
+                log.warn("Error cerrando el log de salas: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.drawtogether.repository;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.Room;
+
+/**
+ * Lado de reserva de la réplica: recibe de un {@link ReplicatingRoomRepository} las salas y
+ * sus eventos y mantiene una copia en memoria.
+ *
+ * Cuando el nodo principal deja de enviar datos (ni eventos ni latidos) durante
+ * {@code promoteAfterMs} y no vuelve a conectar en ese mismo plazo, la réplica se promociona:
+ * {@link #awaitPromotion()} devuelve el repositorio para arrancar el servidor con él y los
+ * clientes se reconectan con RESUME.
+ */
+public class ReplicaReceiver {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaReceiver.class);
+
+    private final int port;
+    private final int promoteAfterMs;
+    private final InMemoryRoomRepository rooms = new InMemoryRoomRepository();
+
+    public ReplicaReceiver(int port, long promoteAfterMs) {
+        this.port = port;
+        this.promoteAfterMs = (int) Math.max(promoteAfterMs, 2 * ReplicatingRoomRepository.HEARTBEAT_INTERVAL_MS);
+    }
+
+    /**
+     * Aplica lo que llega del nodo principal hasta que hay que tomar el relevo. Mientras no
+     * se haya conectado nunca, espera indefinidamente.
+     */
+    public RoomRepository awaitPromotion() throws IOException {
+        try (ServerSocket server = new ServerSocket(port)) {
+            log.info("Réplica esperando al nodo principal en el puerto {}", port);
+            boolean synced = false;
+            while (true) {
+                server.setSoTimeout(synced ? promoteAfterMs : 0);
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                try (socket) {
+                    socket.setSoTimeout(promoteAfterMs);
+                    log.info("Nodo principal conectado desde {}", socket.getRemoteSocketAddress());
+                    synced |= receive(new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024)));
+                } catch (IOException e) {
+                    log.warn("Conexión con el nodo principal perdida: {}", e.getMessage());
+                }
+            }
+        }
+
+        for (Room room : rooms.findAll()) {
+            room.restartEmptyGrace();
+        }
+        log.info("Réplica promocionada con {} salas", rooms.findAll().size());
+        return rooms;
+    }
+
+    /**
+     * Devuelve true si llegó a completar la sincronización inicial antes de cortarse.
+     */
+    private boolean receive(DataInputStream in) throws IOException {
+        Set<String> synced = new HashSet<>();
+        boolean syncEnded = false;
+        try {
+            while (true) {
+                byte record = in.readByte();
+                switch (record) {
+                    case ReplicatingRoomRepository.RECORD_SNAPSHOT -> synced.add(applySnapshot(in));
+                    case ReplicatingRoomRepository.RECORD_SYNC_END -> {
+                        // Las salas que el principal ya no tiene se borraron mientras no había conexión
+                        List<String> removed = new ArrayList<>();
+                        for (Room room : rooms.findAll()) {
+                            if (!synced.contains(room.getId())) {
+                                removed.add(room.getId());
+                            }
+                        }
+                        rooms.deleteAll(removed);
+                        syncEnded = true;
+                        log.info("Réplica sincronizada: {} salas", synced.size());
+                    }
+                    case ReplicatingRoomRepository.RECORD_ROOM -> findOrCreate(in);
+                    case ReplicatingRoomRepository.RECORD_EVENT -> applyEvent(in);
+                    case ReplicatingRoomRepository.RECORD_DELETE -> rooms.deleteById(in.readUTF());
+                    case ReplicatingRoomRepository.RECORD_HEARTBEAT -> {
+                    }
+                    default -> throw new IOException("Registro de réplica desconocido: " + record);
+                }
+            }
+        } catch (EOFException e) {
+            log.warn("El nodo principal cerró la conexión");
+        } catch (SocketTimeoutException e) {
+            log.warn("Sin noticias del nodo principal en {} ms", promoteAfterMs);
+        }
+        return syncEnded;
+    }
+
+    private String applySnapshot(DataInputStream in) throws IOException {
+        Room room = findOrCreate(in);
+        long lastSequence = in.readLong();
+        int count = in.readInt();
+        List<DrawEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(DrawEventStreams.read(in, room.getId()));
+        }
+        if (room.getLastSequence() < lastSequence) {
+            room.restoreHistory(events, lastSequence);
+        }
+        return room.getId();
+    }
+
+    private void applyEvent(DataInputStream in) throws IOException {
+        String roomId = in.readUTF();
+        DrawEvent event = DrawEventStreams.read(in, roomId);
+        Optional<Room> room = rooms.findById(roomId);
+        if (room.isEmpty() || event.getSequence() <= room.get().getLastSequence()) {
+            // Ya incluido en la sincronización inicial, o de una sala borrada después
+            return;
+        }
+        if (event.getSequence() != room.get().getLastSequence() + 1) {
+            throw new IOException("Falta la secuencia " + (room.get().getLastSequence() + 1) + " en la sala " + roomId);
+        }
+        room.get().addDrawEvent(event);
+    }
+
+    private Room findOrCreate(DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        String name = in.readUTF();
+        int maxParticipants = in.readInt();
+        LocalDateTime createdAt = LocalDateTime.parse(in.readUTF());
+        return rooms.findById(id).orElseGet(() -> rooms.save(new Room(id, name, maxParticipants, createdAt)));
+    }
+}
@@ -0,0 +1,304 @@
+package com.drawtogether.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.drawtogether.metrics.MetricsRegistry;
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.HistoryCursor;
+import com.drawtogether.model.Room;
+
+/**
+ * Capa sobre otro {@link RoomRepository} que envía las salas y sus eventos a un nodo de
+ * reserva ({@link ReplicaReceiver}) por una conexión TCP.
+ *
+ * Los cambios solo se encolan, en una cola sin bloqueos con un contador aparte como límite;
+ * un hilo aparte los escribe por lotes, con un único flush por lote, así que replicar no
+ * añade latencia ni contención a la difusión de los trazos. Al conectar (o reconectar) se
+ * envía primero el historial compactado de todas las salas (el de las que están en disco se
+ * lee del fichero, sin recargarlo) y después lo encolado; la réplica ignora los eventos que
+ * ya tenía por su secuencia. Si la cola se llena porque la réplica no da abasto, se corta la
+ * conexión y se vuelve a sincronizar entera.
+ */
+public class ReplicatingRoomRepository implements RoomRepository {
+    private static final Logger log = LoggerFactory.getLogger(ReplicatingRoomRepository.class);
+    static final byte RECORD_ROOM = 1;
+    static final byte RECORD_EVENT = 2;
+    static final byte RECORD_DELETE = 3;
+    static final byte RECORD_SNAPSHOT = 4;
+    static final byte RECORD_SYNC_END = 5;
+    static final byte RECORD_HEARTBEAT = 6;
+
+    static final long HEARTBEAT_INTERVAL_MS = 1_000;
+    private static final long RECONNECT_DELAY_MS = 1_000;
+    private static final int MAX_BATCH = 1_024;
+    private static final int SNAPSHOT_CHUNK = 4_096;
+
+    private record Created(Room room) {
+    }
+
+    private record Appended(String roomId, DrawEvent event) {
+    }
+
+    private record Deleted(String roomId) {
+    }
+
+    private final RoomRepository delegate;
+    private final String host;
+    private final int port;
+    private final int maxPending;
+    private final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+    // Tamaño de la cola; size() de ConcurrentLinkedQueue recorre todos los nodos
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Thread replicator;
+    // El hilo de réplica está aparcado esperando cambios y hay que despertarlo al encolar
+    private volatile boolean waiting;
+    // Solo se encola mientras hay conexión; al conectar se parte de una sincronización completa
+    private volatile boolean linked;
+    private volatile boolean overflowed;
+    private volatile boolean closed;
+
+    public ReplicatingRoomRepository(RoomRepository delegate, String host, int port, int maxPending) {
+        this.delegate = delegate;
+        this.host = host;
+        this.port = port;
+        this.maxPending = maxPending;
+        this.replicator = new Thread(this::run, "room-replicator");
+        replicator.setDaemon(true);
+        replicator.start();
+    }
+
+    private void run() {
+        boolean reported = false;
+        while (!closed) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), (int) RECONNECT_DELAY_MS);
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                while (pending.poll() != null) {
+                    pendingCount.decrementAndGet();
+                }
+                overflowed = false;
+                linked = true;
+                log.info("Replicando salas en {}:{}", host, port);
+                reported = false;
+
+                int rooms = sendSnapshot(out);
+                log.info("Réplica sincronizada: {} salas", rooms);
+                stream(out);
+            } catch (IOException e) {
+                if (!reported && !closed) {
+                    log.warn("Sin conexión con la réplica en {}:{}: {}", host, port, e.getMessage());
+                    reported = true;
+                }
+            } finally {
+                linked = false;
+            }
+            sleepBeforeReconnect();
+        }
+    }
+
+    private int sendSnapshot(DataOutputStream out) throws IOException {
+        int rooms = 0;
+        for (Room room : delegate.findAll()) {
+            try (HistoryCursor history = room.openStoredHistory()) {
+                out.writeByte(RECORD_SNAPSHOT);
+                writeRoom(out, room);
+                out.writeLong(history.getSequence());
+                out.writeInt(history.size());
+                while (history.hasNext()) {
+                    for (DrawEvent event : history.next(SNAPSHOT_CHUNK)) {
+                        DrawEventStreams.write(out, event);
+                    }
+                }
+            }
+            rooms++;
+        }
+        out.writeByte(RECORD_SYNC_END);
+        out.flush();
+        return rooms;
+    }
+
+    private void stream(DataOutputStream out) throws IOException {
+        long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_INTERVAL_MS);
+        long lastWrite = System.nanoTime();
+        while (true) {
+            if (overflowed) {
+                throw new IOException("la réplica no da abasto, se vuelve a sincronizar");
+            }
+            if (Thread.interrupted()) {
+                // Al cerrar se envía lo que quedaba en cola antes de soltar la conexión
+                int written;
+                do {
+                    written = writeBatch(out);
+                } while (written > 0);
+                return;
+            }
+            if (writeBatch(out) > 0) {
+                lastWrite = System.nanoTime();
+                continue;
+            }
+            long idle = System.nanoTime() - lastWrite;
+            if (idle >= heartbeatNanos) {
+                out.writeByte(RECORD_HEARTBEAT);
+                out.flush();
+                lastWrite = System.nanoTime();
+                continue;
+            }
+            waiting = true;
+            // Se vuelve a mirar después de avisar para no perder un cambio encolado entre medias
+            if (pending.isEmpty()) {
+                LockSupport.parkNanos(heartbeatNanos - idle);
+            }
+            waiting = false;
+        }
+    }
+
+    /**
+     * Escribe hasta {@code MAX_BATCH} cambios de la cola con un único flush y devuelve cuántos.
+     */
+    private int writeBatch(DataOutputStream out) throws IOException {
+        int written = 0;
+        Object change;
+        while (written < MAX_BATCH && (change = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            write(out, change);
+            written++;
+        }
+        if (written > 0) {
+            out.flush();
+        }
+        return written;
+    }
+
+    private static void write(DataOutputStream out, Object change) throws IOException {
+        if (change instanceof Appended appended) {
+            out.writeByte(RECORD_EVENT);
+            out.writeUTF(appended.roomId());
+            DrawEventStreams.write(out, appended.event());
+        } else if (change instanceof Created created) {
+            out.writeByte(RECORD_ROOM);
+            writeRoom(out, created.room());
+        } else if (change instanceof Deleted deleted) {
+            out.writeByte(RECORD_DELETE);
+            out.writeUTF(deleted.roomId());
+        }
+    }
+
+    private static void writeRoom(DataOutputStream out, Room room) throws IOException {
+        out.writeUTF(room.getId());
+        out.writeUTF(room.getName());
+        out.writeInt(room.getMaxParticipants());
+        out.writeUTF(room.getCreatedAt().toString());
+    }
+
+    private void enqueue(Object change) {
+        if (!linked) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            overflowed = true;
+            LockSupport.unpark(replicator);
+            return;
+        }
+        pending.offer(change);
+        if (waiting) {
+            LockSupport.unpark(replicator);
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public Room save(Room room) {
+        boolean created = !delegate.existsById(room.getId());
+        Room saved = delegate.save(room);
+        if (created) {
+            enqueue(new Created(room));
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<Room> findById(String id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public Collection<Room> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public boolean deleteById(String id) {
+        boolean deleted = delegate.deleteById(id);
+        if (deleted && !closed) {
+            enqueue(new Deleted(id));
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return delegate.existsById(id);
+    }
+
+    @Override
+    public RoomPage findPage(RoomQuery query) {
+        return delegate.findPage(query);
+    }
+
+    @Override
+    public void appendEvent(Room room, DrawEvent event) {
+        delegate.appendEvent(room, event);
+        enqueue(new Appended(room.getId(), event));
+    }
+
+    @Override
+    public Optional<HistoryCursor> readHistorySince(String roomId, long lastSequence) {
+        return delegate.readHistorySince(roomId, lastSequence);
+    }
+
+    @Override
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.gauge("drawtogether_replication_linked", "1 si hay conexión con la réplica", () -> linked ? 1 : 0);
+        registry.gauge("drawtogether_replication_pending", "Cambios en cola para la réplica", pendingCount::get);
+        delegate.registerMetrics(registry);
+    }
+
+    /**
+     * Las salas que se quitan de memoria al apagar no se borran en la réplica, que es
+     * quien tiene que tomar el relevo.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        replicator.interrupt();
+        try {
+            replicator.join(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+}
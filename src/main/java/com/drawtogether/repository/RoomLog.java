@@ -0,0 +1,511 @@
+package com.drawtogether.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.drawtogether.model.DrawData;
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.DrawEventType;
+import com.drawtogether.model.EventSource;
+import com.drawtogether.model.HistoryCursor;
+import com.drawtogether.model.Room;
+
+/**
+ * Log de eventos de una sala en disco: un directorio con los datos de la sala y
+ * segmentos de tamaño fijo proyectados en memoria, cada uno con nombre igual a la
+ * secuencia de su primer evento.
+ *
+ * Cada registro es {@code [longitud][crc32][evento]}. Al abrir un log se recorre cada
+ * segmento hasta encontrar una longitud 0 o un registro cuyo CRC no coincide, que es
+ * donde se quedó la última escritura antes de una caída; lo que sigue se sobrescribe.
+ *
+ * Para que el log no crezca sin límite se guarda de vez en cuando un checkpoint con el
+ * historial compactado de la sala ({@link #checkpoint}) y se borran los segmentos que
+ * quedan cubiertos por él. Al arrancar basta con cargar el checkpoint y reproducir lo
+ * escrito después.
+ */
+final class RoomLog {
+    private static final String META_FILE = "room.properties";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint.dat";
+    private static final String CHECKPOINT_TEMP_FILE = "checkpoint.tmp";
+    private static final int CHECKPOINT_CHUNK = 4_096;
+    private static final int HEADER_BYTES = 8;
+    private static final DrawEventType[] EVENT_TYPES = DrawEventType.values();
+    // Libera la proyección de un segmento sin esperar al GC; si no está disponible, la libera el GC
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private final Path directory;
+    private final String roomId;
+    private final int segmentBytes;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final CRC32 crc = new CRC32();
+    private Properties meta;
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private Segment active;
+    private long lastSequence;
+    // Último evento incluido en el checkpoint (0 si no hay) y tamaño del fichero
+    private long checkpointSequence;
+    private long checkpointBytes;
+    private boolean dirty;
+    private boolean closed;
+    private boolean deleted;
+
+    private RoomLog(Path directory, String roomId, int segmentBytes) {
+        this.directory = directory;
+        this.roomId = roomId;
+        this.segmentBytes = segmentBytes;
+    }
+
+    static RoomLog create(Path directory, Room room, int segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        Properties meta = new Properties();
+        meta.setProperty("id", room.getId());
+        meta.setProperty("name", room.getName());
+        meta.setProperty("maxParticipants", Integer.toString(room.getMaxParticipants()));
+        meta.setProperty("createdAt", room.getCreatedAt().toString());
+        try (Writer writer = Files.newBufferedWriter(directory.resolve(META_FILE), StandardCharsets.UTF_8)) {
+            meta.store(writer, null);
+        }
+        return new RoomLog(directory, room.getId(), segmentBytes);
+    }
+
+    /**
+     * Abre un log existente; la sala se reconstruye con {@link #newRoom()} y {@link #replay}.
+     */
+    static RoomLog open(Path directory, int segmentBytes) throws IOException {
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(directory.resolve(META_FILE), StandardCharsets.UTF_8)) {
+            meta.load(reader);
+        }
+        RoomLog log = new RoomLog(directory, meta.getProperty("id"), segmentBytes);
+        log.meta = meta;
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(checkpoint))) {
+                log.checkpointSequence = in.readLong();
+            }
+            log.checkpointBytes = Files.size(checkpoint);
+            log.lastSequence = log.checkpointSequence;
+        }
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long firstSequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = Segment.map(file, (int) Files.size(file));
+            segment.recover();
+            if (segment.count == 0 && !log.segments.isEmpty()) {
+                // Segmento creado justo antes de una caída, sin ningún registro completo
+                segment.close();
+                Files.deleteIfExists(file);
+                continue;
+            }
+            log.segments.put(firstSequence, segment);
+            log.active = segment;
+            log.lastSequence = Math.max(log.lastSequence, firstSequence + segment.count - 1);
+        }
+        // Segmentos que ya cubría el checkpoint si hubo una caída antes de borrarlos
+        log.dropCheckpointedSegments();
+        return log;
+    }
+
+    Room newRoom() {
+        return new Room(roomId, meta.getProperty("name"), Integer.parseInt(meta.getProperty("maxParticipants")),
+                LocalDateTime.parse(meta.getProperty("createdAt")));
+    }
+
+    /**
+     * Eventos del checkpoint, hasta {@link #getCheckpointSequence()}; vacío si no hay ninguno.
+     */
+    List<DrawEvent> readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return List.of();
+        }
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(checkpoint), 64 * 1024), new CRC32());
+        try (DataInputStream in = new DataInputStream(checked)) {
+            in.readLong();
+            int count = in.readInt();
+            List<DrawEvent> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                events.add(DrawEventStreams.read(in, roomId));
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("CRC del checkpoint no coincide en " + checkpoint);
+            }
+            return events;
+        }
+    }
+
+    /**
+     * Entrega en orden de secuencia los eventos del log posteriores al checkpoint.
+     */
+    synchronized void replay(Consumer<DrawEvent> consumer) {
+        for (Map.Entry<Long, Segment> entry : segments.entrySet()) {
+            Segment segment = entry.getValue();
+            for (int i = (int) Math.max(0, checkpointSequence + 1 - entry.getKey()); i < segment.count; i++) {
+                consumer.accept(segment.read(roomId, i));
+            }
+        }
+    }
+
+    /**
+     * Si desde el último checkpoint se han llenado segmentos que ocupan al menos lo mismo que
+     * él, de modo que reescribirlo cuesta menos que lo que libera.
+     */
+    synchronized boolean needsCheckpoint() {
+        long sealedBytes = 0;
+        for (Segment segment : segments.values()) {
+            if (segment != active) {
+                sealedBytes += segment.buffer.capacity();
+            }
+        }
+        return !closed && sealedBytes > 0 && sealedBytes >= checkpointBytes;
+    }
+
+    /**
+     * Guarda como checkpoint el historial compactado de la sala y borra los segmentos que
+     * quedan cubiertos por él. El fichero se escribe y sincroniza aparte y después sustituye
+     * al anterior de forma atómica, así que una caída deja uno de los dos completo; mientras
+     * tanto se puede seguir escribiendo en el log.
+     */
+    void checkpoint(HistoryCursor history) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT_TEMP_FILE);
+        long bytes;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeLong(history.getSequence());
+            out.writeInt(history.size());
+            while (history.hasNext()) {
+                for (DrawEvent event : history.next(CHECKPOINT_CHUNK)) {
+                    DrawEventStreams.write(out, event);
+                }
+            }
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+            bytes = channel.size();
+        }
+
+        synchronized (this) {
+            if (closed || history.getSequence() <= checkpointSequence) {
+                Files.deleteIfExists(temp);
+                if (deleted) {
+                    // La sala se borró mientras se escribía el checkpoint
+                    Files.deleteIfExists(directory);
+                }
+                return;
+            }
+            Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            checkpointSequence = history.getSequence();
+            checkpointBytes = bytes;
+            lastSequence = Math.max(lastSequence, checkpointSequence);
+            dropCheckpointedSegments();
+        }
+    }
+
+    synchronized long getCheckpointSequence() {
+        return checkpointSequence;
+    }
+
+    synchronized void append(DrawEvent event) throws IOException {
+        if (closed) {
+            throw new IOException("El log de la sala " + roomId + " está cerrado");
+        }
+        ByteBuffer record = encode(event);
+        int needed = HEADER_BYTES + record.remaining();
+        if (active == null || active.buffer.remaining() < needed) {
+            roll(event.getSequence(), needed);
+        }
+        crc.reset();
+        crc.update(record.duplicate());
+        MappedByteBuffer buffer = active.buffer;
+        int offset = buffer.position();
+        buffer.putInt(record.remaining());
+        buffer.putInt((int) crc.getValue());
+        buffer.put(record);
+        active.addOffset(offset);
+        lastSequence = event.getSequence();
+        dirty = true;
+    }
+
+    /**
+     * Lleva a disco lo escrito desde la última llamada. Se invoca periódicamente para
+     * agrupar en una sola sincronización todas las escrituras del intervalo.
+     */
+    synchronized void force() {
+        if (dirty && active != null) {
+            active.buffer.force();
+            dirty = false;
+        }
+    }
+
+    synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    synchronized long getFirstSequence() {
+        return segments.isEmpty() ? lastSequence + 1 : segments.firstKey();
+    }
+
+    /**
+     * Eventos a partir de {@code fromSequence} leídos directamente de los segmentos
+     * proyectados; cada bloque se decodifica solo cuando se pide. Si entre medias un
+     * checkpoint borró los segmentos que hacían falta, la lectura falla.
+     */
+    EventSource readFrom(long fromSequence) {
+        return (from, to) -> {
+            List<DrawEvent> events = new ArrayList<>(Math.max(0, to - from));
+            synchronized (this) {
+                if (closed || fromSequence + from < getFirstSequence()) {
+                    throw new IllegalStateException("Los eventos pedidos ya no están en el log de la sala " + roomId);
+                }
+                for (long sequence = fromSequence + from; sequence < fromSequence + to; sequence++) {
+                    Map.Entry<Long, Segment> entry = segments.floorEntry(sequence);
+                    events.add(entry.getValue().read(roomId, (int) (sequence - entry.getKey())));
+                }
+            }
+            return events;
+        };
+    }
+
+    synchronized void close() throws IOException {
+        force();
+        closeSegments();
+    }
+
+    synchronized void delete() throws IOException {
+        closeSegments();
+        deleted = true;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private void closeSegments() throws IOException {
+        closed = true;
+        active = null;
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    /**
+     * Borra los segmentos cuyos eventos están todos en el checkpoint, salvo el activo.
+     */
+    private void dropCheckpointedSegments() throws IOException {
+        while (!segments.isEmpty()) {
+            Map.Entry<Long, Segment> first = segments.firstEntry();
+            Segment segment = first.getValue();
+            if (segment == active || first.getKey() + segment.count - 1 > checkpointSequence) {
+                return;
+            }
+            segments.pollFirstEntry();
+            segment.close();
+            Files.deleteIfExists(segment.file);
+        }
+    }
+
+    private void roll(long firstSequence, int needed) throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            dirty = false;
+        }
+        Path file = directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+        active = Segment.map(file, Math.max(segmentBytes, needed));
+        segments.put(firstSequence, active);
+    }
+
+    private ByteBuffer encode(DrawEvent event) {
+        while (true) {
+            try {
+                scratch.clear();
+                LocalDateTime timestamp = event.getTimestamp();
+                scratch.putLong(event.getSequence());
+                scratch.putLong(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano());
+                scratch.put((byte) event.getType().ordinal());
+                putString(event.getId());
+                putString(event.getUserId());
+                DrawData drawData = event.getDrawData();
+                scratch.put((byte) (drawData != null ? 1 : 0));
+                if (drawData != null) {
+                    scratch.putDouble(drawData.getX());
+                    scratch.putDouble(drawData.getY());
+                    scratch.putDouble(drawData.getStrokeWidth());
+                    putString(drawData.getColor());
+                    putString(drawData.getTool());
+                }
+                return scratch.flip();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            scratch.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        scratch.putInt(bytes.length);
+        scratch.put(bytes);
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int[] offsets = new int[64];
+        private int count;
+
+        private Segment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static Segment map(Path file, int size) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        /**
+         * Recorre los registros válidos y deja la posición de escritura justo detrás del último.
+         */
+        private void recover() {
+            CRC32 crc = new CRC32();
+            int position = 0;
+            while (position + HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.slice(position + HEADER_BYTES, length));
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    break;
+                }
+                addOffset(position);
+                position += HEADER_BYTES + length;
+            }
+            buffer.position(position);
+            // Borrar la cabecera de una escritura a medias para que no se lea como válida más adelante
+            if (position + HEADER_BYTES <= buffer.capacity()) {
+                buffer.putInt(position, 0);
+            }
+        }
+
+        private void addOffset(int offset) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        }
+
+        private DrawEvent read(String roomId, int index) {
+            int offset = offsets[index];
+            ByteBuffer record = buffer.slice(offset + HEADER_BYTES, buffer.getInt(offset));
+            long sequence = record.getLong();
+            long nanos = record.getLong();
+            DrawEventType type = EVENT_TYPES[record.get()];
+            String id = getString(record);
+            String userId = getString(record);
+            DrawData drawData = null;
+            if (record.get() == 1) {
+                double x = record.getDouble();
+                double y = record.getDouble();
+                double strokeWidth = record.getDouble();
+                drawData = new DrawData(getString(record), strokeWidth, x, y, getString(record));
+            }
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(
+                    Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+            return new DrawEvent(id, roomId, timestamp, userId, type, drawData, sequence);
+        }
+
+        private static String getString(ByteBuffer record) {
+            int length = record.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            record.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Cierra el fichero y libera la proyección. Solo se llama bajo el monitor del log,
+         * el mismo que usan las lecturas, así que nadie vuelve a tocar el buffer después.
+         */
+        private void close() throws IOException {
+            channel.close();
+            if (INVOKE_CLEANER != null) {
+                try {
+                    INVOKE_CLEANER.invoke((ByteBuffer) buffer);
+                } catch (Throwable e) {
+                    // Se queda proyectado hasta que el GC recoja el buffer
+                }
+            }
+        }
+    }
+}
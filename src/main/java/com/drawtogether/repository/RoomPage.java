@@ -0,0 +1,11 @@
+package com.drawtogether.repository;
+
+import java.util.List;
+
+import com.drawtogether.model.RoomSummary;
+
+/**
+ * Página de resultados de una {@link RoomQuery}. {@code nextCursor} es null en la última página.
+ */
+public record RoomPage(List<RoomSummary> rooms, String nextCursor) {
+}
@@ -0,0 +1,8 @@
+package com.drawtogether.repository;
+
+/**
+ * Consulta paginada de salas. Sin {@code namePrefix} las salas salen por fecha de creación;
+ * con él, por nombre. {@code cursor} es el {@code nextCursor} de la página anterior o null.
+ */
+public record RoomQuery(String namePrefix, boolean freeSlotsOnly, String cursor, int limit) {
+}
@@ -3,6 +3,9 @@ package com.drawtogether.repository;
 import java.util.Collection;
 import java.util.Optional;
 
+import com.drawtogether.metrics.MetricsRegistry;
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.HistoryCursor;
 import com.drawtogether.model.Room;
 
 public interface RoomRepository {
@@ -11,4 +14,31 @@ public interface RoomRepository {
     Collection<Room> findAll();
     boolean deleteById(String id);
     boolean existsById(String id);
+    RoomPage findPage(RoomQuery query);
+
+    default int deleteAll(Collection<String> ids) {
+        int deleted = 0;
+        for (String id : ids) {
+            if (deleteById(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    default void appendEvent(Room room, DrawEvent event) {
+    }
+
+    default Optional<HistoryCursor> readHistorySince(String roomId, long lastSequence) {
+        return Optional.empty();
+    }
+
+    /**
+     * Registra las métricas propias de esta capa; los decoradores pasan también por su delegado.
+     */
+    default void registerMetrics(MetricsRegistry registry) {
+    }
+
+    default void close() {
+    }
 }
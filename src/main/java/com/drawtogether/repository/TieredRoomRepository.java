@@ -0,0 +1,351 @@
+package com.drawtogether.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.drawtogether.metrics.MetricsRegistry;
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.EventSource;
+import com.drawtogether.model.HistoryCursor;
+import com.drawtogether.model.Room;
+import com.drawtogether.model.SpilledHistory;
+
+/**
+ * Capa sobre otro {@link RoomRepository} que mantiene en memoria solo el historial de
+ * las salas activas.
+ *
+ * Periódicamente suma la memoria de los historiales; si pasa del presupuesto, guarda en
+ * disco (comprimido) el historial de las salas que llevan más tiempo sin actividad hasta
+ * volver a estar por debajo. Los datos de la sala y sus participantes siguen en memoria, y
+ * el historial se vuelve a cargar la próxima vez que se pide (al unirse alguien o al dibujar).
+ */
+public class TieredRoomRepository implements RoomRepository {
+    private static final Logger log = LoggerFactory.getLogger(TieredRoomRepository.class);
+    private static final String SPILL_SUFFIX = ".hist.gz";
+
+    private final RoomRepository delegate;
+    private final Path directory;
+    private final long memoryBudgetBytes;
+    private final long idleNanos;
+    private final ScheduledExecutorService sweeper;
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final AtomicLong residentRooms = new AtomicLong();
+    private final AtomicLong spilledRooms = new AtomicLong();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder reloadNanos = new LongAdder();
+    private final AtomicLong maxReloadNanos = new AtomicLong();
+
+    public TieredRoomRepository(RoomRepository delegate, Path directory, long memoryBudgetBytes,
+                                long idleMs, long sweepIntervalMs) {
+        this.delegate = delegate;
+        this.directory = directory;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMs);
+        try {
+            Files.createDirectories(directory);
+            // Lo que quede de una ejecución anterior ya no pertenece a ninguna sala en memoria
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.filter(path -> path.toString().endsWith(SPILL_SUFFIX)).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el directorio de historiales en " + directory, e);
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "room-spiller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void sweep() {
+        try {
+            List<Room> resident = new ArrayList<>();
+            long bytes = 0;
+            int spilled = 0;
+            for (Room room : delegate.findAll()) {
+                if (room.isSpilled()) {
+                    spilled++;
+                } else {
+                    resident.add(room);
+                    bytes += room.getResidentHistoryBytes();
+                }
+            }
+
+            int spilledNow = 0;
+            if (bytes > memoryBudgetBytes) {
+                long now = System.nanoTime();
+                resident.sort(Comparator.comparingLong(Room::getLastActivityNanos));
+                for (Room room : resident) {
+                    if (bytes <= memoryBudgetBytes || now - room.getLastActivityNanos() < idleNanos) {
+                        break;
+                    }
+                    long roomBytes = room.getResidentHistoryBytes();
+                    try {
+                        if (room.spill(events -> write(room.getId(), events))) {
+                            bytes -= roomBytes;
+                            spilledNow++;
+                        }
+                    } catch (UncheckedIOException e) {
+                        log.error("No se pudo guardar en disco el historial de la sala {}: {}",
+                                room.getId(), e.getMessage());
+                    }
+                }
+                if (spilledNow > 0) {
+                    log.info("Historiales guardados en disco: {} salas; en memoria quedan {} salas, {} bytes",
+                            spilledNow, resident.size() - spilledNow, bytes);
+                }
+            }
+
+            residentBytes.set(bytes);
+            residentRooms.set(resident.size() - spilledNow);
+            spilledRooms.set(spilled + spilledNow);
+        } catch (RuntimeException e) {
+            log.error("Error revisando la memoria de las salas", e);
+        }
+    }
+
+    private SpilledHistory write(String roomId, List<DrawEvent> events) {
+        Path file = directory.resolve(roomId + SPILL_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file))))) {
+            out.writeInt(events.size());
+            for (DrawEvent event : events) {
+                DrawEventStreams.write(out, event);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SpilledHistory() {
+            @Override
+            public List<DrawEvent> load() {
+                long start = System.nanoTime();
+                List<DrawEvent> loaded = read(roomId, file);
+                long elapsed = System.nanoTime() - start;
+                reloads.increment();
+                reloadNanos.add(elapsed);
+                maxReloadNanos.accumulateAndGet(elapsed, Math::max);
+                return loaded;
+            }
+
+            @Override
+            public HistoryCursor open(long sequence) {
+                return stream(roomId, file, sequence);
+            }
+
+            @Override
+            public void discard() {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("No se pudo borrar {}: {}", file, e.getMessage());
+                }
+            }
+        };
+    }
+
+    private static List<DrawEvent> read(String roomId, Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            int count = in.readInt();
+            List<DrawEvent> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                events.add(DrawEventStreams.read(in, roomId));
+            }
+            return events;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo cargar el historial de la sala " + roomId, e);
+        }
+    }
+
+    private static HistoryCursor stream(String roomId, Path file, long sequence) {
+        try {
+            InputStream input = Files.newInputStream(file);
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(input)));
+                int count = in.readInt();
+                return HistoryCursor.over(new SpillReader(roomId, in, count), 0, count, sequence);
+            } catch (IOException | RuntimeException e) {
+                input.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el historial de la sala " + roomId, e);
+        }
+    }
+
+    /**
+     * Lectura en orden de un historial guardado en disco sin cargarlo entero. El fichero
+     * se cierra al llegar al final o al cerrar el cursor; como ya está abierto, sigue
+     * pudiéndose leer aunque la sala lo borre al recargarse.
+     */
+    private static final class SpillReader implements EventSource {
+        private final String roomId;
+        private final DataInputStream in;
+        private final int count;
+        private int position;
+
+        private SpillReader(String roomId, DataInputStream in, int count) {
+            this.roomId = roomId;
+            this.in = in;
+            this.count = count;
+        }
+
+        @Override
+        public synchronized List<DrawEvent> slice(int from, int to) {
+            if (from != position) {
+                throw new IllegalStateException("El historial en disco solo se puede leer en orden");
+            }
+            List<DrawEvent> events = new ArrayList<>(Math.max(0, to - from));
+            try {
+                for (int i = from; i < to; i++) {
+                    events.add(DrawEventStreams.read(in, roomId));
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("No se pudo leer el historial de la sala " + roomId, e);
+            }
+            position = to;
+            if (position >= count) {
+                close();
+            }
+            return events;
+        }
+
+        @Override
+        public synchronized void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.debug("Error cerrando el historial de la sala {}: {}", roomId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Salas con el historial en memoria en la última revisión.
+     */
+    public long getResidentRooms() {
+        return residentRooms.get();
+    }
+
+    /**
+     * Salas con el historial en disco en la última revisión.
+     */
+    public long getSpilledRooms() {
+        return spilledRooms.get();
+    }
+
+    /**
+     * Memoria estimada de los historiales en memoria en la última revisión.
+     */
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    /**
+     * Tiempo total dedicado a recargar historiales desde disco, en nanosegundos.
+     */
+    public long getReloadNanos() {
+        return reloadNanos.sum();
+    }
+
+    public long getMaxReloadNanos() {
+        return maxReloadNanos.get();
+    }
+
+    @Override
+    public Room save(Room room) {
+        return delegate.save(room);
+    }
+
+    @Override
+    public Optional<Room> findById(String id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public Collection<Room> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public boolean deleteById(String id) {
+        boolean deleted = delegate.deleteById(id);
+        try {
+            Files.deleteIfExists(directory.resolve(id + SPILL_SUFFIX));
+        } catch (IOException e) {
+            log.warn("No se pudo borrar el historial en disco de la sala {}: {}", id, e.getMessage());
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return delegate.existsById(id);
+    }
+
+    @Override
+    public RoomPage findPage(RoomQuery query) {
+        return delegate.findPage(query);
+    }
+
+    @Override
+    public void appendEvent(Room room, DrawEvent event) {
+        delegate.appendEvent(room, event);
+    }
+
+    @Override
+    public Optional<HistoryCursor> readHistorySince(String roomId, long lastSequence) {
+        return delegate.readHistorySince(roomId, lastSequence);
+    }
+
+    @Override
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.gauge("drawtogether_rooms_history_resident", "Salas con el historial en memoria", this::getResidentRooms);
+        registry.gauge("drawtogether_rooms_history_spilled", "Salas con el historial en disco", this::getSpilledRooms);
+        registry.gauge("drawtogether_history_resident_bytes", "Memoria estimada de los historiales en memoria",
+                this::getResidentBytes);
+        registry.counter("drawtogether_history_reloads_total", "Historiales recargados desde disco", this::getReloadCount);
+        registry.counter("drawtogether_history_reload_nanoseconds_total", "Tiempo total recargando historiales",
+                this::getReloadNanos);
+        registry.gauge("drawtogether_history_reload_max_nanoseconds", "Recarga de historial más lenta",
+                this::getMaxReloadNanos);
+        delegate.registerMetrics(registry);
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdown();
+        delegate.close();
+    }
+}
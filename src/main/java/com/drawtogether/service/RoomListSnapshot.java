@@ -0,0 +1,77 @@
+package com.drawtogether.service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.drawtogether.model.RoomSummary;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Lista inmutable de salas en una versión concreta, ordenada por fecha de creación.
+ *
+ * El JSON de la lista se genera una sola vez por versión y se reutiliza en todas las
+ * respuestas que la incluyen.
+ */
+public final class RoomListSnapshot {
+    private final long version;
+    private final Map<String, RoomSummary> rooms;
+    private volatile String roomsJson;
+
+    RoomListSnapshot(long version, List<RoomSummary> rooms) {
+        Map<String, RoomSummary> byId = new LinkedHashMap<>();
+        for (RoomSummary room : rooms) {
+            byId.put(room.id(), room);
+        }
+        this.version = version;
+        this.rooms = Collections.unmodifiableMap(byId);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Map<String, RoomSummary> getRooms() {
+        return rooms;
+    }
+
+    /**
+     * Array JSON con las salas, con los mismos campos que ROOMS_UPDATED.
+     */
+    public String getRoomsJson() {
+        String json = roomsJson;
+        if (json == null) {
+            json = writeRooms(rooms.values());
+            roomsJson = json;
+        }
+        return json;
+    }
+
+    private static String writeRooms(Iterable<RoomSummary> rooms) {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginArray();
+            for (RoomSummary room : rooms) {
+                writeRoom(writer, room);
+            }
+            writer.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static void writeRoom(JsonWriter writer, RoomSummary room) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(room.id());
+        writer.name("name").value(room.name());
+        writer.name("maxParticipants").value(room.maxParticipants());
+        writer.name("currentParticipantsCount").value(room.currentParticipantsCount());
+        writer.name("createdAt").value(room.createdAt().toString());
+        writer.endObject();
+    }
+}
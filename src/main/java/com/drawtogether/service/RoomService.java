@@ -2,16 +2,25 @@ package com.drawtogether.service;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.HistoryCursor;
 import com.drawtogether.model.Room;
+import com.drawtogether.repository.RoomPage;
+import com.drawtogether.repository.RoomQuery;
 
 public interface RoomService {
     Room createRoom(String name, int maxParticipants);
     Optional<Room> getRoomById(String roomId);
     Collection<Room> getAllRooms();
+    RoomListSnapshot getRoomList();
+    RoomPage findRooms(RoomQuery query);
     boolean joinRoom(String roomId, String userId);
     boolean leaveRoom(String roomId, String userId);
     boolean deleteRoom(String roomId);
-    void addDrawEvent(String roomId, DrawEvent event);
+    Optional<DrawEvent> addDrawEvent(String roomId, DrawEvent event);
+    Optional<HistoryCursor> openHistorySince(String roomId, long lastSequence);
+    void onRoomsRemoved(Consumer<Collection<String>> listener);
+    void close();
 }
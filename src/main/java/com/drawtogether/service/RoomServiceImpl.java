@@ -1,25 +1,120 @@
 package com.drawtogether.service;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.HistoryCursor;
 import com.drawtogether.model.Room;
+import com.drawtogether.model.RoomSummary;
+import com.drawtogether.repository.RoomPage;
+import com.drawtogether.repository.RoomQuery;
 import com.drawtogether.repository.RoomRepository;
 
 public class RoomServiceImpl implements RoomService {
+    private static final Logger log = LoggerFactory.getLogger(RoomServiceImpl.class);
+    private static final long DEFAULT_EMPTY_ROOM_GRACE_MS = 60_000;
+    private static final long DEFAULT_REAPER_INTERVAL_MS = 10_000;
+
     private final RoomRepository roomRepository;
+    private final long emptyRoomGraceNanos;
+    private final Predicate<String> ownsRoomId;
+    private final ScheduledExecutorService reaper;
+    private final List<Consumer<Collection<String>>> roomsRemovedListeners = new CopyOnWriteArrayList<>();
+    // Se incrementa con cada cambio de datos o participantes de una sala
+    private final AtomicLong roomListVersion = new AtomicLong();
+    private volatile RoomListSnapshot roomList = new RoomListSnapshot(0, List.of());
 
     public RoomServiceImpl(RoomRepository roomRepository) {
+        this(roomRepository, DEFAULT_EMPTY_ROOM_GRACE_MS, DEFAULT_REAPER_INTERVAL_MS);
+    }
+
+    /**
+     * Las salas vacías se conservan {@code emptyRoomGraceMs} (para que quien recarga la página
+     * no pierda el lienzo) y se borran en bloque cada {@code reaperIntervalMs}.
+     */
+    public RoomServiceImpl(RoomRepository roomRepository, long emptyRoomGraceMs, long reaperIntervalMs) {
+        this(roomRepository, emptyRoomGraceMs, reaperIntervalMs, roomId -> true);
+    }
+
+    /**
+     * {@code ownsRoomId} indica qué ids de sala corresponden a este nodo; las salas nuevas
+     * solo reciben ids que lo cumplan.
+     */
+    public RoomServiceImpl(RoomRepository roomRepository, long emptyRoomGraceMs, long reaperIntervalMs,
+                           Predicate<String> ownsRoomId) {
         this.roomRepository = roomRepository;
+        this.ownsRoomId = ownsRoomId;
+        this.emptyRoomGraceNanos = TimeUnit.MILLISECONDS.toNanos(emptyRoomGraceMs);
+        if (!roomRepository.findAll().isEmpty()) {
+            // Salas recuperadas al arrancar: la lista vacía inicial ya no es válida
+            roomListVersion.incrementAndGet();
+        }
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "room-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::reapEmptyRooms, reaperIntervalMs, reaperIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cierra y borra las salas que llevan vacías más que el periodo de gracia. El cierre
+     * es atómico con las altas, así que una sala cerrada no puede recibir a nadie mientras se borra.
+     */
+    private void reapEmptyRooms() {
+        try {
+            long emptyBefore = System.nanoTime() - emptyRoomGraceNanos;
+            List<String> expired = new ArrayList<>();
+            for (Room room : roomRepository.findAll()) {
+                if (room.closeIfEmptySince(emptyBefore)) {
+                    expired.add(room.getId());
+                }
+            }
+            if (expired.isEmpty()) {
+                return;
+            }
+            roomRepository.deleteAll(expired);
+            roomListVersion.incrementAndGet();
+            log.info("Salas vacías eliminadas: {}", expired.size());
+            for (Consumer<Collection<String>> listener : roomsRemovedListeners) {
+                listener.accept(expired);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error eliminando salas vacías", e);
+        }
+    }
+
+    @Override
+    public void onRoomsRemoved(Consumer<Collection<String>> listener) {
+        roomsRemovedListeners.add(listener);
     }
 
     @Override
     public Room createRoom(String name, int maxParticipants) {
         String roomId = UUID.randomUUID().toString();
+        // Con N nodos hacen falta N intentos de media hasta dar con un id propio
+        while (!ownsRoomId.test(roomId)) {
+            roomId = UUID.randomUUID().toString();
+        }
         Room room = new Room(roomId, name, maxParticipants);
-        return roomRepository.save(room);
+        roomRepository.save(room);
+        roomListVersion.incrementAndGet();
+        return room;
     }
 
     @Override
@@ -32,6 +127,39 @@ public class RoomServiceImpl implements RoomService {
         return roomRepository.findAll();
     }
 
+    /**
+     * Devuelve la lista de salas de la última versión. Solo se reconstruye si alguna sala
+     * cambió desde la última lectura; varios cambios seguidos cuestan una única reconstrucción.
+     */
+    @Override
+    public RoomListSnapshot getRoomList() {
+        RoomListSnapshot snapshot = roomList;
+        if (snapshot.getVersion() == roomListVersion.get()) {
+            return snapshot;
+        }
+        synchronized (this) {
+            snapshot = roomList;
+            // La versión se lee antes de recorrer las salas: un cambio concurrente deja la lista
+            // como desactualizada y se vuelve a construir en la siguiente lectura
+            long version = roomListVersion.get();
+            if (snapshot.getVersion() != version) {
+                List<RoomSummary> summaries = new ArrayList<>();
+                for (Room room : roomRepository.findAll()) {
+                    summaries.add(RoomSummary.of(room));
+                }
+                summaries.sort(Comparator.comparing(RoomSummary::createdAt).thenComparing(RoomSummary::id));
+                snapshot = new RoomListSnapshot(version, summaries);
+                roomList = snapshot;
+            }
+            return snapshot;
+        }
+    }
+
+    @Override
+    public RoomPage findRooms(RoomQuery query) {
+        return roomRepository.findPage(query);
+    }
+
     @Override
     public boolean joinRoom(String roomId, String userId) {
         Optional<Room> roomOpt = roomRepository.findById(roomId);
@@ -40,6 +168,7 @@ public class RoomServiceImpl implements RoomService {
             boolean joined = room.addParticipant(userId);
             if (joined) {
                 roomRepository.save(room);
+                roomListVersion.incrementAndGet();
             }
             return joined;
         }
@@ -53,11 +182,8 @@ public class RoomServiceImpl implements RoomService {
             Room room = roomOpt.get();
             boolean left = room.removeParticipant(userId);
             if (left) {
-                roomRepository.save(room);
-                // Si la sala queda vacía, la eliminamos
-                if (room.getCurrentParticipantsCount() == 0) {
-                    roomRepository.deleteById(roomId);
-                }
+                // Si la sala queda vacía la borra el reaper pasado el periodo de gracia
+                roomListVersion.incrementAndGet();
             }
             return left;
         }
@@ -65,17 +191,40 @@ public class RoomServiceImpl implements RoomService {
     }
 
     @Override
-    public void addDrawEvent(String roomId, DrawEvent event) {
+    public Optional<DrawEvent> addDrawEvent(String roomId, DrawEvent event) {
         Optional<Room> roomOpt = roomRepository.findById(roomId);
         if (roomOpt.isPresent()) {
             Room room = roomOpt.get();
-            room.addDrawEvent(event);
-            roomRepository.save(room);
+            DrawEvent sequenced = room.addDrawEvent(event);
+            roomRepository.appendEvent(room, sequenced);
+            return Optional.of(sequenced);
         }
+        return Optional.empty();
+    }
+
+    /**
+     * Eventos posteriores a {@code lastSequence}: primero de la ventana en memoria de la sala
+     * y, si ya no están ahí, del repositorio.
+     */
+    @Override
+    public Optional<HistoryCursor> openHistorySince(String roomId, long lastSequence) {
+        return roomRepository.findById(roomId).flatMap(room -> room.openHistorySince(lastSequence)
+                .or(() -> roomRepository.readHistorySince(roomId, lastSequence)));
+    }
+
+    @Override
+    public void close() {
+        reaper.shutdown();
+        roomRepository.close();
     }
 
     @Override
     public boolean deleteRoom(String roomId) {
-        return roomRepository.deleteById(roomId);
+        roomRepository.findById(roomId).ifPresent(Room::close);
+        boolean deleted = roomRepository.deleteById(roomId);
+        if (deleted) {
+            roomListVersion.incrementAndGet();
+        }
+        return deleted;
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.drawtogether.websocket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.java_websocket.WebSocket;
+
+/**
+ * Controla los bytes pendientes de envío de cada conexión.
+ *
+ * Por encima de la marca alta la conexión pasa a estar congestionada y deja de recibir
+ * mensajes descartables (STROKE_MOVE intermedios); vuelve a la normalidad al bajar de la
+ * marca baja. Si supera el límite de expulsión, o sigue congestionada demasiado tiempo,
+ * se desconecta pidiendo al cliente que se vuelva a sincronizar.
+ *
+ * Los bytes pendientes los lleva el {@link TrackedDraft} de cada conexión, así que
+ * comprobarlos no recorre la cola de salida.
+ */
+final class BackpressureMonitor {
+
+    enum Decision {
+        SEND,
+        DROP,
+        EVICT
+    }
+
+    private final long highWatermarkBytes;
+    private final long lowWatermarkBytes;
+    private final long evictBytes;
+    private final long evictAfterMs;
+    // Marca de las conexiones ya expulsadas, que siguen con entrada hasta que se cierran
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    // Solo las conexiones congestionadas tienen entrada, con el instante en que se congestionaron
+    private final Map<WebSocket, Long> congestedSince = new ConcurrentHashMap<>();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder evictedConsumers = new LongAdder();
+
+    BackpressureMonitor(long highWatermarkBytes, long lowWatermarkBytes, long evictBytes, long evictAfterMs) {
+        this.highWatermarkBytes = highWatermarkBytes;
+        this.lowWatermarkBytes = Math.min(lowWatermarkBytes, highWatermarkBytes);
+        this.evictBytes = Math.max(evictBytes, highWatermarkBytes);
+        this.evictAfterMs = evictAfterMs;
+    }
+
+    /**
+     * EVICT se devuelve una sola vez por conexión; hasta que se llame a {@link #remove} el
+     * resto de mensajes se descartan sin contarlos, porque la conexión ya se está cerrando.
+     */
+    Decision check(WebSocket conn, boolean droppable) {
+        long queued = TrackedDraft.pendingBytes(conn);
+        Long since = congestedSince.get(conn);
+
+        if (since != null && since == EVICTED) {
+            return Decision.DROP;
+        }
+        if (since == null) {
+            if (queued <= highWatermarkBytes) {
+                return Decision.SEND;
+            }
+            long now = System.currentTimeMillis();
+            Long previous = congestedSince.putIfAbsent(conn, now);
+            since = previous != null ? previous : now;
+        } else if (queued <= lowWatermarkBytes) {
+            congestedSince.remove(conn, since);
+            return Decision.SEND;
+        }
+
+        if (queued > evictBytes || System.currentTimeMillis() - since > evictAfterMs) {
+            // Si otro hilo cambió la entrada entretanto, ya la expulsó él o la conexión se recuperó
+            if (!congestedSince.replace(conn, since, EVICTED)) {
+                return Decision.DROP;
+            }
+            evictedConsumers.increment();
+            return Decision.EVICT;
+        }
+        if (droppable) {
+            droppedFrames.increment();
+            return Decision.DROP;
+        }
+        return Decision.SEND;
+    }
+
+    void remove(WebSocket conn) {
+        congestedSince.remove(conn);
+    }
+
+    long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    long getEvictedConsumers() {
+        return evictedConsumers.sum();
+    }
+}
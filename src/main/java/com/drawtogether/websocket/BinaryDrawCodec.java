@@ -0,0 +1,309 @@
+package com.drawtogether.websocket;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import com.drawtogether.model.DrawData;
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.DrawEventType;
+
+/**
+ * Protocolo binario opcional para eventos de dibujo, negociado con el
+ * subprotocolo {@value #SUBPROTOCOL} en el handshake.
+ *
+ * Cada frame binario es una secuencia de registros (big-endian); un lote de eventos
+ * es simplemente un frame con varios registros DRAW:
+ * <pre>
+ * DEFINE (0x10): [op u8][kind u8][id u16][len u16][utf8 bytes]   kind: 0 color, 1 tool, 2 user
+ * RESET  (0x11): [op u8]                                          vacía el diccionario del receptor
+ * DRAW   (0x01): [op u8][type u8][flags u8]
+ *                cliente -> servidor: (si flags & 1) [x f32][y f32][strokeWidth f32][color u16][tool u16]
+ *                servidor -> cliente: [user u16][sequence u32] y (si flags & 1) [x f32][y f32][strokeWidth f32][color u16][tool u16]
+ * </pre>
+ * Los ids que envía el cliente son de su propio diccionario (por conexión); los que envía
+ * el servidor pertenecen al diccionario de la sala, compartido por todos sus miembros
+ * binarios para que cada evento se codifique una sola vez por broadcast.
+ *
+ * Ningún valor de un DEFINE pasa de {@value #MAX_VALUE_BYTES} bytes: los mensajes entrantes,
+ * binarios o JSON, con valores más largos se rechazan.
+ */
+final class BinaryDrawCodec {
+
+    static final String SUBPROTOCOL = "drawtogether.binary.v1";
+
+    static final byte OP_DRAW = 0x01;
+    static final byte OP_DEFINE = 0x10;
+    static final byte OP_RESET = 0x11;
+
+    static final byte KIND_COLOR = 0;
+    static final byte KIND_TOOL = 1;
+    static final byte KIND_USER = 2;
+
+    private static final byte FLAG_HAS_DRAW_DATA = 1;
+    private static final int MAX_ID = 0xFFFF;
+    static final int MAX_VALUE_BYTES = 256;
+    private static final DrawEventType[] EVENT_TYPES = DrawEventType.values();
+
+    private BinaryDrawCodec() {
+    }
+
+    /**
+     * Diccionario que el cliente define para sus propios mensajes. Vive mientras dure la conexión.
+     */
+    static final class InboundDictionary {
+        private final Map<Integer, String> colors = new HashMap<>();
+        private final Map<Integer, String> tools = new HashMap<>();
+
+        private Map<Integer, String> byKind(byte kind) {
+            return switch (kind) {
+                case KIND_COLOR -> colors;
+                case KIND_TOOL -> tools;
+                default -> throw new IllegalArgumentException("Tipo de diccionario no soportado: " + kind);
+            };
+        }
+    }
+
+    /**
+     * Diccionario de salida de una sala. Debe usarse bajo su propio monitor, junto con el envío
+     * del frame, para que los DEFINE lleguen a todos los miembros antes que los ids que los usan.
+     */
+    static final class RoomDictionary {
+        private final List<Map<String, Integer>> entries = List.of(new HashMap<>(), new HashMap<>(), new HashMap<>());
+
+        private int size() {
+            return entries.stream().mapToInt(Map::size).sum();
+        }
+    }
+
+    /**
+     * Decodifica un frame del cliente. Los registros DEFINE actualizan el diccionario de la conexión
+     * y cada DRAW se devuelve como mensaje entrante, en el orden del frame.
+     */
+    static List<DrawEventCodec.IncomingMessage> decode(ByteBuffer frame, InboundDictionary dictionary) {
+        List<DrawEventCodec.IncomingMessage> events = new ArrayList<>(1);
+        try {
+            while (frame.hasRemaining()) {
+                byte op = frame.get();
+                switch (op) {
+                    case OP_DEFINE -> {
+                        byte kind = frame.get();
+                        int id = Short.toUnsignedInt(frame.getShort());
+                        dictionary.byKind(kind).put(id, readString(frame));
+                    }
+                    case OP_RESET -> {
+                        dictionary.colors.clear();
+                        dictionary.tools.clear();
+                    }
+                    case OP_DRAW -> events.add(readDraw(frame, dictionary));
+                    default -> throw new IllegalArgumentException("Registro binario desconocido: " + op);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Frame binario truncado", e);
+        }
+        return events;
+    }
+
+    private static DrawEventCodec.IncomingMessage readDraw(ByteBuffer frame, InboundDictionary dictionary) {
+        int typeIndex = Byte.toUnsignedInt(frame.get());
+        if (typeIndex >= EVENT_TYPES.length) {
+            throw new IllegalArgumentException("Tipo de evento desconocido: " + typeIndex);
+        }
+        byte flags = frame.get();
+
+        DrawEventCodec.IncomingMessage message = new DrawEventCodec.IncomingMessage();
+        message.action = DrawEventCodec.DRAW_EVENT_ACTION;
+        message.eventType = EVENT_TYPES[typeIndex].name();
+        if ((flags & FLAG_HAS_DRAW_DATA) != 0) {
+            double x = frame.getFloat();
+            double y = frame.getFloat();
+            double strokeWidth = frame.getFloat();
+            String color = lookup(dictionary.colors, Short.toUnsignedInt(frame.getShort()), "color");
+            String tool = lookup(dictionary.tools, Short.toUnsignedInt(frame.getShort()), "herramienta");
+            message.drawData = new DrawData(color, strokeWidth, x, y, tool);
+        }
+        return message;
+    }
+
+    private static String lookup(Map<Integer, String> entries, int id, String what) {
+        String value = entries.get(id);
+        if (value == null) {
+            throw new IllegalArgumentException("Id de " + what + " no definido: " + id);
+        }
+        return value;
+    }
+
+    private record Define(byte kind, int id, byte[] value) {
+    }
+
+    /**
+     * Codifica uno o varios eventos en un único frame para los miembros binarios de la sala,
+     * anteponiendo los DEFINE de los valores que aún no estaban en el diccionario.
+     */
+    static ByteBuffer encode(List<DrawEvent> events, RoomDictionary dictionary) {
+        boolean reset = dictionary.size() + events.size() * 3 > MAX_ID;
+        if (reset) {
+            // Diccionario lleno: se reinicia y el propio frame lo comunica a los clientes
+            dictionary.entries.forEach(Map::clear);
+        }
+
+        List<Define> defines = new ArrayList<>(0);
+        int[] ids = new int[events.size() * 3];
+        int size = reset ? 1 : 0;
+        for (int i = 0; i < events.size(); i++) {
+            DrawEvent event = events.get(i);
+            DrawData drawData = event.getDrawData();
+            ids[i * 3] = intern(dictionary, KIND_USER, event.getUserId(), defines);
+            if (drawData != null) {
+                ids[i * 3 + 1] = intern(dictionary, KIND_COLOR, drawData.getColor(), defines);
+                ids[i * 3 + 2] = intern(dictionary, KIND_TOOL, drawData.getTool(), defines);
+            }
+            size += drawRecordSize(event);
+        }
+        for (Define define : defines) {
+            size += 6 + define.value().length;
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        if (reset) {
+            frame.put(OP_RESET);
+        }
+        defines.forEach(define -> putDefine(frame, define));
+        for (int i = 0; i < events.size(); i++) {
+            DrawEvent event = events.get(i);
+            DrawData drawData = event.getDrawData();
+            frame.put(OP_DRAW)
+                    .put((byte) event.getType().ordinal())
+                    .put(drawData != null ? FLAG_HAS_DRAW_DATA : 0)
+                    .putShort((short) ids[i * 3])
+                    .putInt((int) event.getSequence());
+            if (drawData != null) {
+                frame.putFloat((float) drawData.getX())
+                        .putFloat((float) drawData.getY())
+                        .putFloat((float) drawData.getStrokeWidth())
+                        .putShort((short) ids[i * 3 + 1])
+                        .putShort((short) ids[i * 3 + 2]);
+            }
+        }
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Copia de un frame de {@link #encode} sin los registros DRAW de los eventos indicados.
+     * Conserva el RESET y los DEFINE: el diccionario de la sala ya cambió y todos los miembros
+     * tienen que recibirlos, también los que no reciben ningún evento del frame.
+     */
+    static ByteBuffer withoutEvents(ByteBuffer frame, List<DrawEvent> events, IntPredicate excluded) {
+        int recordsSize = 0;
+        int keptSize = 0;
+        for (int i = 0; i < events.size(); i++) {
+            int recordSize = drawRecordSize(events.get(i));
+            recordsSize += recordSize;
+            if (!excluded.test(i)) {
+                keptSize += recordSize;
+            }
+        }
+
+        ByteBuffer source = frame.duplicate();
+        int prefixSize = source.remaining() - recordsSize;
+        ByteBuffer copy = ByteBuffer.allocate(prefixSize + keptSize);
+        copy.put(source.slice(source.position(), prefixSize));
+        int offset = source.position() + prefixSize;
+        for (int i = 0; i < events.size(); i++) {
+            int recordSize = drawRecordSize(events.get(i));
+            if (!excluded.test(i)) {
+                copy.put(source.slice(offset, recordSize));
+            }
+            offset += recordSize;
+        }
+        copy.flip();
+        return copy;
+    }
+
+    private static int drawRecordSize(DrawEvent event) {
+        return 9 + (event.getDrawData() != null ? 16 : 0);
+    }
+
+    private static int intern(RoomDictionary dictionary, byte kind, String value, List<Define> defines) {
+        Map<String, Integer> entries = dictionary.entries.get(kind);
+        Integer id = entries.get(value);
+        if (id == null) {
+            id = entries.size();
+            entries.put(value, id);
+            defines.add(new Define(kind, id, boundedBytes(value)));
+        }
+        return id;
+    }
+
+    /**
+     * UTF-8 del valor, cortado en el último carácter completo que cabe en {@link #MAX_VALUE_BYTES}.
+     * Lo que llega de los clientes ya viene acotado; esto protege el campo de longitud de
+     * valores de otro origen (réplicas, historiales antiguos).
+     */
+    private static byte[] boundedBytes(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_VALUE_BYTES) {
+            return bytes;
+        }
+        int length = MAX_VALUE_BYTES;
+        while ((bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Si el valor recibido de un cliente cabe en un DEFINE.
+     */
+    static boolean fitsValue(String value) {
+        return value.length() * 3 <= MAX_VALUE_BYTES
+                || value.getBytes(StandardCharsets.UTF_8).length <= MAX_VALUE_BYTES;
+    }
+
+    private static void putDefine(ByteBuffer frame, Define define) {
+        frame.put(OP_DEFINE)
+                .put(define.kind())
+                .putShort((short) define.id())
+                .putShort((short) define.value().length)
+                .put(define.value());
+    }
+
+    /**
+     * Frame con todos los DEFINE actuales de la sala, para un miembro binario recién unido.
+     */
+    static ByteBuffer encodeDictionary(RoomDictionary dictionary) {
+        List<Define> defines = new ArrayList<>();
+        int size = 1;
+        for (byte kind = KIND_COLOR; kind <= KIND_USER; kind++) {
+            for (Map.Entry<String, Integer> entry : dictionary.entries.get(kind).entrySet()) {
+                Define define = new Define(kind, entry.getValue(), boundedBytes(entry.getKey()));
+                defines.add(define);
+                size += 6 + define.value().length;
+            }
+        }
+
+        // El RESET inicial deja al cliente con exactamente el diccionario actual de la sala
+        ByteBuffer frame = ByteBuffer.allocate(size).put(OP_RESET);
+        defines.forEach(define -> putDefine(frame, define));
+        frame.flip();
+        return frame;
+    }
+
+    private static String readString(ByteBuffer frame) {
+        int length = Short.toUnsignedInt(frame.getShort());
+        if (length > MAX_VALUE_BYTES) {
+            throw new IllegalArgumentException("Valor de diccionario demasiado largo: " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        frame.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
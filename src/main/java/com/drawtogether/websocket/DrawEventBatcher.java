@@ -0,0 +1,126 @@
+package com.drawtogether.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.java_websocket.WebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.DrawEventType;
+
+/**
+ * Agrupa los eventos de dibujo salientes de cada sala y los entrega en lotes,
+ * ya sea al cumplirse el intervalo configurado o al llegar al tamaño máximo.
+ *
+ * El lote es uno por sala y guarda los eventos en orden de secuencia, junto con la conexión
+ * que envió cada uno para que no se le devuelvan sus propios eventos: cada cliente recibe
+ * los eventos de los demás en orden de secuencia creciente. STROKE_END y CLEAR_CANVAS
+ * vacían el lote de la sala en cuanto llegan.
+ */
+final class DrawEventBatcher {
+    private static final Logger log = LoggerFactory.getLogger(DrawEventBatcher.class);
+
+    interface Flusher {
+        /**
+         * @param senders conexión que envió cada evento, en el mismo orden que {@code events}
+         */
+        void flush(String roomId, List<DrawEvent> events, List<WebSocket> senders);
+    }
+
+    private final Flusher flusher;
+    private final long intervalMs;
+    private final int maxEvents;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, RoomBatch> rooms = new ConcurrentHashMap<>();
+
+    DrawEventBatcher(Flusher flusher, long intervalMs, int maxEvents) {
+        this.flusher = flusher;
+        this.intervalMs = intervalMs;
+        this.maxEvents = Math.max(1, maxEvents);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "draw-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Se llama desde el buzón de la sala, así que los eventos llegan en orden de secuencia.
+     */
+    void submit(String roomId, WebSocket sender, DrawEvent event) {
+        RoomBatch batch = rooms.computeIfAbsent(roomId, RoomBatch::new);
+        synchronized (batch) {
+            if (batch.closed) {
+                // Se quitó la sala justo después de obtener el lote: el siguiente es uno nuevo
+                submit(roomId, sender, event);
+                return;
+            }
+            batch.events.add(event);
+            batch.senders.add(sender);
+
+            DrawEventType type = event.getType();
+            if (type == DrawEventType.STROKE_END || type == DrawEventType.CLEAR_CANVAS
+                    || batch.events.size() >= maxEvents) {
+                batch.flush();
+            } else if (!batch.scheduled) {
+                batch.scheduled = true;
+                scheduler.schedule(batch::flushOnTick, intervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * La sala se ha quedado sin miembros. El lote se cierra bajo su monitor para que un
+     * tick ya programado no lo entregue después; lo pendiente ya no tiene destinatarios.
+     */
+    void removeRoom(String roomId) {
+        RoomBatch batch = rooms.remove(roomId);
+        if (batch != null) {
+            synchronized (batch) {
+                batch.closed = true;
+            }
+        }
+    }
+
+    private final class RoomBatch {
+        private final String roomId;
+        private List<DrawEvent> events = new ArrayList<>();
+        private List<WebSocket> senders = new ArrayList<>();
+        private boolean scheduled;
+        private boolean closed;
+
+        private RoomBatch(String roomId) {
+            this.roomId = roomId;
+        }
+
+        private synchronized void flushOnTick() {
+            scheduled = false;
+            flush();
+        }
+
+        /**
+         * Se entrega bajo el monitor del lote: dos lotes de la misma sala no se adelantan.
+         */
+        private void flush() {
+            if (closed || events.isEmpty()) {
+                return;
+            }
+            List<DrawEvent> flushedEvents = events;
+            List<WebSocket> flushedSenders = senders;
+            events = new ArrayList<>();
+            senders = new ArrayList<>();
+            try {
+                flusher.flush(roomId, flushedEvents, flushedSenders);
+            } catch (Exception e) {
+                log.warn("Error enviando lote de eventos de dibujo: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.drawtogether.websocket;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.drawtogether.model.DrawData;
+import com.drawtogether.model.DrawEvent;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Codec en streaming para DRAW_EVENT, el mensaje más frecuente del servidor.
+ * Lee la acción y los datos del evento sin construir un árbol JsonObject y
+ * escribe la respuesta directamente con JsonWriter, sin mapas intermedios.
+ */
+final class DrawEventCodec {
+
+    static final String DRAW_EVENT_ACTION = "DRAW_EVENT";
+    static final String DRAW_EVENTS_BATCH_TYPE = "DRAW_EVENTS_BATCH";
+    static final String HISTORY_CHUNK_TYPE = "HISTORY_CHUNK";
+
+    private DrawEventCodec() {
+    }
+
+    /**
+     * Resultado de leer un mensaje entrante. Si la acción no es DRAW_EVENT el mensaje se
+     * procesa por el camino general con {@code fields}, el resto de campos ya como árbol.
+     */
+    static final class IncomingMessage {
+        String action;
+        String eventType;
+        DrawData drawData;
+        // Solo se crea si el mensaje trae otros campos además de action y eventData
+        JsonObject fields;
+
+        boolean isDrawEvent() {
+            return DRAW_EVENT_ACTION.equals(action);
+        }
+    }
+
+    /**
+     * Lee el mensaje una sola vez, en modo permisivo como JsonParser, para aceptar lo mismo
+     * que aceptaba el servidor cuando todos los mensajes se parseaban como árbol.
+     */
+    static IncomingMessage read(String json) {
+        IncomingMessage result = new IncomingMessage();
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "action" -> result.action = readNullableString(reader);
+                    // eventData puede llegar antes que action, así que se lee siempre
+                    case "eventData" -> readEventData(reader, result);
+                    default -> {
+                        if (result.fields == null) {
+                            result.fields = new JsonObject();
+                        }
+                        result.fields.add(name, JsonParser.parseReader(reader));
+                    }
+                }
+            }
+            reader.endObject();
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("El mensaje tiene contenido después del objeto JSON");
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return result;
+    }
+
+    private static void readEventData(JsonReader reader, IncomingMessage result) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+
+        Double x = null;
+        Double y = null;
+        Double strokeWidth = null;
+        String color = null;
+        String tool = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "type" -> result.eventType = reader.nextString();
+                case "x" -> x = reader.nextDouble();
+                case "y" -> y = reader.nextDouble();
+                case "color" -> color = readBoundedString(reader, name);
+                case "strokeWidth" -> strokeWidth = reader.nextDouble();
+                case "tool" -> tool = readBoundedString(reader, name);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (x != null && y != null && color != null && strokeWidth != null) {
+            // Siempre incluir la herramienta, por defecto "brush"
+            result.drawData = new DrawData(color, strokeWidth, x, y, tool != null ? tool : "brush");
+        }
+    }
+
+    private static String readBoundedString(JsonReader reader, String name) throws IOException {
+        String value = reader.nextString();
+        if (!BinaryDrawCodec.fitsValue(value)) {
+            throw new JsonSyntaxException("Valor demasiado largo en " + name);
+        }
+        return value;
+    }
+
+    private static String readNullableString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Serializa la respuesta DRAW_EVENT completa (sobre + datos del evento)
+     * con el mismo formato que generaba createResponse.
+     */
+    static String writeDrawEvent(DrawEvent event) {
+        StringWriter out = new StringWriter(256);
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("type").value(DRAW_EVENT_ACTION);
+            writer.name("message").value("Evento de dibujo");
+            writer.name("timestamp").value(LocalDateTime.now().toString());
+            writer.name("data");
+            writeEventData(writer, event);
+            writer.endObject();
+        } catch (IOException e) {
+            // StringWriter no lanza IOException
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Serializa un lote DRAW_EVENTS_BATCH con los eventos de un mismo usuario, en orden.
+     */
+    static String writeDrawEventsBatch(List<DrawEvent> events) {
+        StringWriter out = new StringWriter(64 + events.size() * 192);
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("type").value(DRAW_EVENTS_BATCH_TYPE);
+            writer.name("message").value("Lote de eventos de dibujo");
+            writer.name("timestamp").value(LocalDateTime.now().toString());
+            writer.name("data").beginObject();
+            writer.name("events").beginArray();
+            for (DrawEvent event : events) {
+                writeEventData(writer, event);
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Serializa un bloque HISTORY_CHUNK del historial de una sala. Cada evento lleva los
+     * mismos campos que DRAW_EVENT, así el cliente aplica igual el historial y lo que llega en vivo.
+     */
+    static String writeHistoryChunk(String roomId, int index, List<DrawEvent> events) {
+        StringWriter out = new StringWriter(96 + events.size() * 192);
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("type").value(HISTORY_CHUNK_TYPE);
+            writer.name("message").value("Historial de la sala");
+            writer.name("timestamp").value(LocalDateTime.now().toString());
+            writer.name("data").beginObject();
+            writer.name("roomId").value(roomId);
+            writer.name("index").value(index);
+            writer.name("drawEvents").beginArray();
+            for (DrawEvent event : events) {
+                writeEventData(writer, event);
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    private static void writeEventData(JsonWriter writer, DrawEvent event) throws IOException {
+        writer.beginObject();
+        writer.name("eventId").value(event.getId());
+        writer.name("sequence").value(event.getSequence());
+        writer.name("userId").value(event.getUserId());
+        writer.name("timestamp").value(event.getTimestamp().toString());
+        writer.name("type").value(event.getType().toString());
+
+        DrawData drawData = event.getDrawData();
+        if (drawData != null) {
+            writer.name("drawData").beginObject();
+            writer.name("x").value(drawData.getX());
+            writer.name("y").value(drawData.getY());
+            writer.name("color").value(drawData.getColor());
+            writer.name("strokeWidth").value(drawData.getStrokeWidth());
+            writer.name("tool").value(drawData.getTool());
+            writer.endObject();
+        }
+        writer.endObject();
+    }
+}
@@ -1,45 +1,113 @@
 package com.drawtogether.websocket;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.Protocol;
 import org.java_websocket.server.WebSocketServer;
-
-import com.drawtogether.model.DrawData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.drawtogether.cluster.ClusterNode;
+import com.drawtogether.cluster.ClusterRing;
+import com.drawtogether.config.ServerConfig;
+import com.drawtogether.metrics.MetricsRegistry;
+import com.drawtogether.metrics.MetricsServer;
+import com.drawtogether.model.Room;
 import com.drawtogether.model.DrawEvent;
 import com.drawtogether.model.DrawEventType;
+import com.drawtogether.model.HistoryCursor;
 import com.drawtogether.repository.InMemoryRoomRepository;
+import com.drawtogether.repository.LogRoomRepository;
+import com.drawtogether.repository.RoomPage;
+import com.drawtogether.repository.ReplicatingRoomRepository;
+import com.drawtogether.repository.RoomQuery;
+import com.drawtogether.repository.RoomRepository;
+import com.drawtogether.repository.TieredRoomRepository;
+import com.drawtogether.service.RoomListSnapshot;
 import com.drawtogether.service.RoomService;
 import com.drawtogether.service.RoomServiceImpl;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializer;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
+
+public final class DrawWebSocketServer extends WebSocketServer {
+    private static final Logger log = LoggerFactory.getLogger(DrawWebSocketServer.class);
 
-public class DrawWebSocketServer extends WebSocketServer {
+    // Código de cierre para clientes lentos: deben reconectar y volver a pedir el historial
+    static final int CLOSE_RESYNC_REQUIRED = 4008;
+    private static final int DEFAULT_ROOMS_PAGE_SIZE = 50;
+    private static final int MAX_ROOMS_PAGE_SIZE = 200;
+    private static final long SPILL_SWEEP_INTERVAL_MS = 5_000;
 
     private final RoomService roomService;
+    private final ClusterRing clusterRing;
     private final Gson gson;
     private final Map<WebSocket, String> connectionToUserId;
     private final Map<WebSocket, String> connectionToRoomId;
-    private final Set<WebSocket> allConnections;
+    private final Map<String, Set<WebSocket>> roomConnections;
+    private final Map<WebSocket, BinaryDrawCodec.InboundDictionary> binaryConnections;
+    private final Map<String, BinaryDrawCodec.RoomDictionary> roomDictionaries;
+    // Secuencias de STROKE_MOVE descartadas por congestión que aún no se han notificado a cada conexión
+    private final Map<WebSocket, List<Long>> droppedSequences;
+    private final LobbyFeed lobbyFeed;
+    private final MessageDispatcher messageDispatcher;
+    private final long drawBatchIntervalMs;
+    private final int drawBatchMaxEvents;
+    // Se crea en onStart: el lote entrega desde otro hilo y no debe ver el servidor a medio construir
+    private volatile DrawEventBatcher drawEventBatcher;
+    private final HistoryStreamer historyStreamer;
+    private final RoomSequencer roomSequencer;
+    private final BackpressureMonitor backpressure;
+    private final ServerMetrics metrics;
+    private final int metricsPort;
+    private final LogSampler messageLogSampler;
+    private MetricsServer metricsServer;
 
     public DrawWebSocketServer(int port) {
-        super(new InetSocketAddress(port));
-        this.roomService = new RoomServiceImpl(new InMemoryRoomRepository());
+        this(port, ServerConfig.fromEnvironment());
+    }
+
+    public DrawWebSocketServer(int port, ServerConfig config) {
+        this(port, config, createRepository(config));
+    }
+
+    /**
+     * Servidor sobre un repositorio ya creado, como el de una réplica que toma el relevo.
+     */
+    public DrawWebSocketServer(int port, ServerConfig config, RoomRepository repository) {
+        // El subprotocolo binario es opcional: el protocolo vacío acepta a los clientes JSON
+        super(new InetSocketAddress(port), List.of(new TrackedDraft(Collections.emptyList(),
+                List.of(new Protocol(BinaryDrawCodec.SUBPROTOCOL), new Protocol("")))));
+        this.clusterRing = ClusterRing.parse(config.getClusterNodes(), config.getNodeId());
+        if (clusterRing.isClustered()) {
+            log.info("Nodo {} de un cluster de {} nodos", clusterRing.getLocalNode().id(), clusterRing.getNodes().size());
+        }
+        this.roomService = new RoomServiceImpl(repository, config.getEmptyRoomGraceMs(),
+                config.getRoomReaperIntervalMs(), clusterRing::isLocal);
         
         // Configurar Gson con adaptador personalizado para LocalDateTime
         this.gson = new GsonBuilder()
@@ -51,105 +119,288 @@ public class DrawWebSocketServer extends WebSocketServer {
                 
         this.connectionToUserId = new ConcurrentHashMap<>();
         this.connectionToRoomId = new ConcurrentHashMap<>();
-        this.allConnections = ConcurrentHashMap.newKeySet();
+        this.roomConnections = new ConcurrentHashMap<>();
+        this.binaryConnections = new ConcurrentHashMap<>();
+        this.roomDictionaries = new ConcurrentHashMap<>();
+        this.droppedSequences = new ConcurrentHashMap<>();
+        this.drawBatchIntervalMs = config.getDrawBatchIntervalMs();
+        this.drawBatchMaxEvents = config.getDrawBatchMaxEvents();
+        // El historial se envía mientras lo pendiente de la conexión no pase de la marca baja
+        this.historyStreamer = new HistoryStreamer(config.getHistoryChunkEvents(),
+                config.getOutboundLowWatermarkBytes(), config.getOutboundEvictBytes());
+        setWebSocketFactory(new TrackingSocketFactory(historyStreamer::written));
+        this.roomSequencer = new RoomSequencer();
+        this.backpressure = new BackpressureMonitor(config.getOutboundHighWatermarkBytes(),
+                config.getOutboundLowWatermarkBytes(), config.getOutboundEvictBytes(), config.getSlowConsumerEvictMs());
+        this.lobbyFeed = new LobbyFeed(roomService::getRoomList, new LobbyFeed.Frames() {
+            @Override
+            public String full(RoomListSnapshot rooms) {
+                return createRoomListResponse("ROOMS_UPDATED", "Lista de salas actualizada", rooms);
+            }
+
+            @Override
+            public String delta(long version, long previousVersion, List<Map<String, Object>> changes) {
+                return createResponse("ROOMS_DELTA", "Cambios en la lista de salas",
+                        Map.of("version", version, "previousVersion", previousVersion, "changes", changes));
+            }
+        }, this::broadcastToLobby, config.getLobbyUpdateIntervalMs());
+        this.metrics = new ServerMetrics(new MetricsRegistry());
+        this.metricsPort = config.getMetricsPort();
+        registerMetrics(metrics.getRegistry(), repository);
+        roomService.onRoomsRemoved(roomIds -> {
+            roomIds.forEach(metrics::removeRoom);
+            lobbyFeed.roomsChanged();
+        });
+        this.messageDispatcher = new MessageDispatcher(MessageDispatcher.parseMode(config.getMessageExecution()));
+        this.messageLogSampler = new LogSampler(log, config.getLogDebugSamplesPerSecond());
+    }
+
+    private static RoomRepository createRepository(ServerConfig config) {
+        RoomRepository repository;
+        if (config.getRoomLogDir() == null) {
+            repository = new InMemoryRoomRepository();
+        } else {
+            log.info("Usando log persistente de salas en {}", config.getRoomLogDir());
+            repository = new LogRoomRepository(Path.of(config.getRoomLogDir()), config.getRoomLogSegmentBytes(),
+                    config.getRoomLogFlushIntervalMs());
+        }
+        if (config.getRoomMemoryBudgetBytes() > 0) {
+            repository = new TieredRoomRepository(repository, Path.of(config.getRoomSpillDir()),
+                    config.getRoomMemoryBudgetBytes(), config.getRoomSpillIdleMs(), SPILL_SWEEP_INTERVAL_MS);
+        }
+        if (config.getReplicationStandby() != null) {
+            String standby = config.getReplicationStandby();
+            int separator = standby.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("REPLICATION_STANDBY debe ser host:puerto: " + standby);
+            }
+            repository = new ReplicatingRoomRepository(repository, standby.substring(0, separator),
+                    Integer.parseInt(standby.substring(separator + 1)), config.getReplicationMaxPending());
+        }
+        return repository;
+    }
+
+    private void registerMetrics(MetricsRegistry registry, RoomRepository repository) {
+        registry.gauge("drawtogether_connections", "Conexiones WebSocket abiertas", () -> getConnections().size());
+        registry.gauge("drawtogether_lobby_connections", "Conexiones en el lobby", lobbyFeed::getSubscriberCount);
+        registry.gauge("drawtogether_rooms", "Salas existentes", () -> roomService.getAllRooms().size());
+        registry.gaugeFamily("drawtogether_room_participants", "Participantes por sala", "room", () -> {
+            Map<String, Long> participants = new HashMap<>();
+            for (Room room : roomService.getAllRooms()) {
+                participants.put(room.getId(), (long) room.getCurrentParticipantsCount());
+            }
+            return participants;
+        });
+        // Ninguna de las dos recarga el historial de las salas que están en disco
+        registry.gaugeFamily("drawtogether_room_history_events",
+                "Eventos del historial que recibe quien se une a cada sala (snapshot compactado y tail)",
+                "room", () -> {
+                    Map<String, Long> history = new HashMap<>();
+                    for (Room room : roomService.getAllRooms()) {
+                        history.put(room.getId(), (long) room.getHistorySize());
+                    }
+                    return history;
+                });
+        registry.gaugeFamily("drawtogether_room_last_sequence", "Eventos recibidos por cada sala desde que se creó",
+                "room", () -> {
+                    Map<String, Long> sequences = new HashMap<>();
+                    for (Room room : roomService.getAllRooms()) {
+                        sequences.put(room.getId(), room.getLastSequence());
+                    }
+                    return sequences;
+                });
+        registry.counter("drawtogether_backpressure_dropped_frames_total",
+                "STROKE_MOVE descartados para clientes congestionados", backpressure::getDroppedFrames);
+        registry.counter("drawtogether_backpressure_evicted_total",
+                "Clientes lentos desconectados", backpressure::getEvictedConsumers);
+        repository.registerMetrics(registry);
+    }
+
+    /**
+     * Cierra el repositorio antes que las conexiones: así las salas que se vacían al
+     * desconectar a todos no se borran del log.
+     */
+    @Override
+    public void stop(int timeout, String closeMessage) throws InterruptedException {
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        roomService.close();
+        super.stop(timeout, closeMessage);
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        System.out.println("Conexion cerrada:" + conn.getRemoteSocketAddress());
+        log.atInfo().addKeyValue("remote", conn.getRemoteSocketAddress()).addKeyValue("code", code)
+                .addKeyValue("remoteClose", remote).log("Conexion cerrada");
+        // Detrás de lo que la conexión tenga pendiente, para que un JOIN_ROOM encolado no la vuelva a dar de alta
+        messageDispatcher.close(conn, () -> handleClose(conn));
+    }
 
+    private void handleClose(WebSocket conn) {
         String userId = connectionToUserId.get(conn);
         String roomId = connectionToRoomId.get(conn);
 
         if (userId != null && roomId != null) {
             roomService.leaveRoom(roomId, userId);
+            log.atInfo().addKeyValue("roomId", roomId).addKeyValue("userId", userId).log("Usuario desconectado de la sala");
             
-            // Obtener información actualizada de la sala después de que el usuario salga
-            roomService.getRoomById(roomId).ifPresent(room -> {
-                // Convertir Set a List para JSON
-                List<String> participantsList = new ArrayList<>(room.getParticipants());
-                
-                Map<String, Object> userLeftData = Map.of(
-                        "userId", userId,
-                        "roomId", roomId,
-                        "participants", participantsList,
-                        "maxParticipants", room.getMaxParticipants(),
-                        "currentParticipantsCount", room.getCurrentParticipantsCount()
-                );
-                broadcastToRoom(roomId, createResponse("USER_LEFT", "Usuario desconectado", userLeftData));
-            });
+            roomSequencer.execute(roomId, () -> removeAndNotifyUserLeft(conn, roomId, userId, "Usuario desconectado"));
             
-            // Actualizar la lista de salas para todos los clientes
-            broadcastRoomListUpdate();
+            // Actualizar la lista de salas en el lobby
+            lobbyFeed.roomsChanged();
         }
 
         connectionToUserId.remove(conn);
         connectionToRoomId.remove(conn);
-        allConnections.remove(conn);
+        binaryConnections.remove(conn);
+        droppedSequences.remove(conn);
+        historyStreamer.cancel(conn);
+        backpressure.remove(conn);
+        lobbyFeed.unsubscribe(conn);
     }
 
     @Override
     public void onError(WebSocket conn, Exception ex) {
-        System.err.println("WebSocket error: " + ex.getMessage());
-        if (conn != null) {
-            System.err.println("Connection: " + conn.getRemoteSocketAddress());
-        }
-        ex.printStackTrace();
+        log.atError().addKeyValue("remote", conn != null ? conn.getRemoteSocketAddress() : null)
+                .setCause(ex).log("WebSocket error");
     }
 
     @Override
     public void onMessage(WebSocket conn, String message) {
+        // Se muestrea: escribir cada mensaje cuesta más que atenderlo a ritmo de STROKE_MOVE
+        if (messageLogSampler.sample()) {
+            log.atDebug().addKeyValue("remote", conn.getRemoteSocketAddress()).addKeyValue("message", message)
+                    .log("Mensaje recibido");
+        }
+
+        DrawEventCodec.IncomingMessage incoming;
+        try {
+            // DRAW_EVENT es el mensaje más frecuente: se lee en streaming sin construir el árbol JSON
+            incoming = DrawEventCodec.read(message);
+        } catch (JsonSyntaxException e) {
+            logInvalidJson(conn, message, e);
+            sendMessage(conn, createResponse("ERROR", "Error procesando mensaje JSON", null));
+            return;
+        } catch (Exception e) {
+            log.atError().addKeyValue("remote", conn.getRemoteSocketAddress()).setCause(e)
+                    .log("Error general procesando mensaje");
+            sendMessage(conn, createResponse("ERROR", "Error interno del servidor", null));
+            return;
+        }
+
+        if (incoming.isDrawEvent()) {
+            messageDispatcher.dispatch(conn, true, () -> handleDrawEvent(conn, incoming));
+        } else {
+            messageDispatcher.dispatch(conn, false, () -> handleAction(conn, incoming));
+        }
+    }
+
+    /**
+     * Acciones distintas de DRAW_EVENT, con el mensaje ya leído por {@link DrawEventCodec#read}.
+     */
+    private void handleAction(WebSocket conn, DrawEventCodec.IncomingMessage incoming) {
+        long start = System.nanoTime();
+        String action = incoming.action;
         try {
-            System.out.println("Received message: " + message); // Debug log
-            JsonObject jsonMessage = JsonParser.parseString(message).getAsJsonObject();
-            String action = jsonMessage.get("action").getAsString();
+            if (action == null) {
+                sendMessage(conn, createResponse("ERROR", "Falta el parámetro action", null));
+                return;
+            }
+            JsonObject jsonMessage = incoming.fields != null ? incoming.fields : new JsonObject();
 
-            System.out.println("Processing action: " + action); // Debug log
+            if (messageLogSampler.sample()) {
+                log.atDebug().addKeyValue("remote", conn.getRemoteSocketAddress()).addKeyValue("action", action)
+                        .log("Procesando acción");
+            }
 
             switch (action) {
                 case "JOIN_ROOM" -> handleJoinRoom(conn, jsonMessage);
+                case "RESUME" -> handleResume(conn, jsonMessage);
                 case "LEAVE_ROOM" -> handleLeaveRoom(conn);
-                case "DRAW_EVENT" -> handleDrawEvent(conn, jsonMessage);
                 case "CREATE_ROOM" -> handleCreateRoom(conn, jsonMessage);
-                case "GET_ROOMS" -> handleGetRooms(conn);
+                case "GET_ROOMS" -> handleGetRooms(conn, jsonMessage);
+                case "SYNC_ROOMS" -> lobbyFeed.resync(conn, jsonMessage.get("version").getAsLong());
                 default -> {
-                    System.err.println("Unrecognized action: " + action);
+                    log.atWarn().addKeyValue("remote", conn.getRemoteSocketAddress()).addKeyValue("action", action)
+                            .log("Acción no reconocida");
                     sendMessage(conn, createResponse("ERROR", "Acción no reconocida: " + action, null));
                 }
             }
-        } catch (JsonSyntaxException e) {
-            System.err.println("Error procesando mensaje JSON: " + e.getMessage());
-            System.err.println("Mensaje recibido: " + message);
-            sendMessage(conn, createResponse("ERROR", "Error procesando mensaje JSON", null));
         } catch (Exception e) {
-            System.err.println("Error general procesando mensaje: " + e.getMessage());
-            e.printStackTrace();
+            log.atError().addKeyValue("remote", conn.getRemoteSocketAddress()).addKeyValue("action", action)
+                    .setCause(e).log("Error general procesando mensaje");
             sendMessage(conn, createResponse("ERROR", "Error interno del servidor", null));
+        } finally {
+            metrics.recordAction(action, start);
+        }
+    }
+
+    private static void logInvalidJson(WebSocket conn, String message, JsonSyntaxException e) {
+        log.atWarn().addKeyValue("remote", conn.getRemoteSocketAddress()).addKeyValue("message", message)
+                .log("Error procesando mensaje JSON: {}", e.getMessage());
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        BinaryDrawCodec.InboundDictionary dictionary = binaryConnections.get(conn);
+        if (dictionary == null) {
+            sendMessage(conn, createResponse("ERROR", "Mensajes binarios requieren el subprotocolo " + BinaryDrawCodec.SUBPROTOCOL, null));
+            return;
+        }
+
+        try {
+            for (DrawEventCodec.IncomingMessage incoming : BinaryDrawCodec.decode(message, dictionary)) {
+                messageDispatcher.dispatch(conn, true, () -> handleDrawEvent(conn, incoming));
+            }
+        } catch (IllegalArgumentException e) {
+            log.atWarn().addKeyValue("remote", conn.getRemoteSocketAddress())
+                    .log("Error procesando mensaje binario: {}", e.getMessage());
+            sendMessage(conn, createResponse("ERROR", "Error procesando mensaje binario", null));
         }
     }
 
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        System.out.println("Nueva conexion WebSocket:" + conn.getRemoteSocketAddress());
-        allConnections.add(conn);
-        sendMessage(conn, createResponse("CONNECTION_ESTABLISHED", "Conectado al server", null));
+        log.atInfo().addKeyValue("remote", conn.getRemoteSocketAddress()).log("Nueva conexion WebSocket");
+
+        boolean binary = conn.getProtocol() != null
+                && BinaryDrawCodec.SUBPROTOCOL.equals(conn.getProtocol().getProvidedProtocol());
+        if (binary) {
+            binaryConnections.put(conn, new BinaryDrawCodec.InboundDictionary());
+        }
+        sendMessage(conn, createResponse("CONNECTION_ESTABLISHED", "Conectado al server",
+                Map.of("protocol", binary ? BinaryDrawCodec.SUBPROTOCOL : "json")));
+        lobbyFeed.subscribe(conn);
     }
 
     @Override
     public void onStart() {
-
+        if (drawBatchIntervalMs > 0) {
+            drawEventBatcher = new DrawEventBatcher(this::broadcastDrawEvents, drawBatchIntervalMs, drawBatchMaxEvents);
+        }
+        if (metricsPort > 0) {
+            try {
+                metricsServer = MetricsServer.start(metricsPort, metrics.getRegistry());
+            } catch (IOException e) {
+                log.error("No se pudo abrir el puerto de metricas {}: {}", metricsPort, e.getMessage());
+            }
+        }
     }
 
     private void sendMessage(WebSocket conn, String message) {
         if (conn != null && conn.isOpen()) {
-            conn.send(message);
-        } else {
-            System.out.println("Connection is not open or is null.");
+            if (admit(conn, false)) {
+                conn.send(message);
+                metrics.recordText(message, 1);
+            }
+        } else if (messageLogSampler.sample()) {
+            log.debug("Connection is not open or is null.");
         }
 
     }
 
-    private String createResponse(String type, String message, Object data) {
+    String createResponse(String type, String message, Object data) {
         Map<String, Object> response = new HashMap<>();
         response.put("type", type);
         response.put("message", message);
@@ -163,43 +414,284 @@ public class DrawWebSocketServer extends WebSocketServer {
 
     }
 
-    private void handleGetRooms(WebSocket conn) {
+    /**
+     * Respuesta con la lista de salas: el array de salas ya serializado se copia tal cual.
+     */
+    private String createRoomListResponse(String type, String message, RoomListSnapshot rooms) {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("type").value(type);
+            writer.name("message").value(message);
+            writer.name("timestamp").value(LocalDateTime.now().toString());
+            writer.name("data").beginObject();
+            writer.name("version").value(rooms.getVersion());
+            writer.name("rooms").jsonValue(rooms.getRoomsJson());
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private void handleGetRooms(WebSocket conn, JsonObject message) {
         try {
-            var rooms = roomService.getAllRooms();
-            
-            // Convertir las salas a un formato serializable simple
-            var roomsData = rooms.stream()
-                .map(room -> Map.of(
-                    "id", room.getId(),
-                    "name", room.getName(),
-                    "maxParticipants", room.getMaxParticipants(),
-                    "currentParticipantsCount", room.getCurrentParticipantsCount(),
-                    "createdAt", room.getCreatedAt().toString()
-                ))
-                .toList();
-            
-            Map<String, Object> response = Map.of("rooms", roomsData);
+            boolean paged = message.has("limit") || message.has("cursor")
+                    || message.has("namePrefix") || message.has("hasFreeSlots");
+            if (!paged) {
+                sendMessage(conn, createRoomListResponse("ROOMS_LIST", "Lista de salas", roomService.getRoomList()));
+                return;
+            }
+
+            int limit = message.has("limit") ? message.get("limit").getAsInt() : DEFAULT_ROOMS_PAGE_SIZE;
+            RoomQuery query = new RoomQuery(
+                    message.has("namePrefix") ? message.get("namePrefix").getAsString() : null,
+                    message.has("hasFreeSlots") && message.get("hasFreeSlots").getAsBoolean(),
+                    message.has("cursor") ? message.get("cursor").getAsString() : null,
+                    Math.min(Math.max(limit, 1), MAX_ROOMS_PAGE_SIZE));
+            RoomPage page = roomService.findRooms(query);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("rooms", page.rooms());
+            response.put("nextCursor", page.nextCursor());
             sendMessage(conn, createResponse("ROOMS_LIST", "Lista de salas", response));
+        } catch (IllegalArgumentException e) {
+            sendMessage(conn, createResponse("ERROR", "Parámetros de paginación inválidos", null));
         } catch (Exception e) {
-            System.err.println("Error getting rooms: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error getting rooms", e);
             sendMessage(conn, createResponse("ERROR", "Error obteniendo lista de salas", null));
         }
     }
 
-    private void broadcastToRoom(String roomId, String message) {
+    void broadcastToRoom(String roomId, String message) {
         broadcastToRoom(roomId, message, null);
     }
 
     private void broadcastToRoom(String roomId, String message, WebSocket excludeConnection) {
-        connectionToRoomId.entrySet().stream()
-                .filter(entry -> roomId.equals(entry.getValue()))
-                .filter(entry -> !entry.getKey().equals(excludeConnection))
-                .forEach(entry -> sendMessage(entry.getKey(), message));
+        Set<WebSocket> members = roomConnections.get(roomId);
+        if (members == null) {
+            return;
+        }
+        List<WebSocket> recipients = new ArrayList<>(members.size());
+        for (WebSocket member : members) {
+            if (member != excludeConnection && member.isOpen() && isLiveRecipient(member, false)) {
+                recipients.add(member);
+            }
+        }
+        if (!recipients.isEmpty()) {
+            // broadcast codifica el texto a frames una sola vez y reutiliza los mismos bytes para cada destinatario
+            broadcast(message, historyStreamer.holdLive(recipients, message));
+            metrics.recordText(message, recipients.size());
+        }
+        metrics.recordFanout(recipients.size());
+    }
+
+    private void streamHistory(WebSocket conn, String roomId, HistoryCursor history) {
+        historyStreamer.stream(conn, history, new HistoryStreamer.Frames() {
+            @Override
+            public String chunk(int index, List<DrawEvent> events) {
+                String frame = DrawEventCodec.writeHistoryChunk(roomId, index, events);
+                metrics.recordText(frame, 1);
+                return frame;
+            }
+
+            @Override
+            public String end(int chunks, long sequence) {
+                String frame = createResponse("HISTORY_END", "Historial completo",
+                        Map.of("roomId", roomId, "chunks", chunks, "sequence", sequence));
+                metrics.recordText(frame, 1);
+                return frame;
+            }
+        });
+    }
+
+    /**
+     * Envía eventos de dibujo a la sala codificándolos una sola vez por formato:
+     * un texto JSON para los clientes JSON y un frame binario para los binarios.
+     * Un único evento sale como DRAW_EVENT y varios como DRAW_EVENTS_BATCH.
+     *
+     * A quien envió alguno de los eventos no se le devuelven los suyos: recibe aparte una
+     * copia sin ellos, así todos reciben los eventos de los demás en orden de secuencia.
+     *
+     * Si a una conexión congestionada se le descartan STROKE_MOVE, antes de su siguiente frame
+     * de dibujo recibe EVENTS_DROPPED con sus secuencias: con ellas puede pedir en un RESUME lo
+     * que le falta aunque ya haya recibido eventos posteriores.
+     */
+    private void broadcastDrawEvents(String roomId, List<DrawEvent> events, List<WebSocket> senders) {
+        Set<WebSocket> members = roomConnections.get(roomId);
+        if (members == null) {
+            return;
+        }
+        // Solo los STROKE_MOVE se pueden descartar para un cliente congestionado
+        boolean droppable = events.stream().allMatch(event -> event.getType() == DrawEventType.STROKE_MOVE);
+        List<WebSocket> jsonRecipients = new ArrayList<>(members.size());
+        List<WebSocket> binaryRecipients = new ArrayList<>(0);
+        List<WebSocket> jsonSenders = new ArrayList<>(0);
+        List<WebSocket> binarySenders = new ArrayList<>(0);
+        for (WebSocket member : members) {
+            if (!member.isOpen()) {
+                continue;
+            }
+            if (!isLiveRecipient(member, droppable)) {
+                if (member.isOpen()) {
+                    recordDropped(member, events, senders);
+                }
+                continue;
+            }
+            notifyDropped(member, roomId);
+            boolean binary = binaryConnections.containsKey(member);
+            if (senders.contains(member)) {
+                (binary ? binarySenders : jsonSenders).add(member);
+            } else {
+                (binary ? binaryRecipients : jsonRecipients).add(member);
+            }
+        }
+
+        metrics.recordFanout(jsonRecipients.size() + binaryRecipients.size() + jsonSenders.size() + binarySenders.size());
+        if (!jsonRecipients.isEmpty()) {
+            String frame = writeDrawEvents(events);
+            broadcast(frame, historyStreamer.holdLive(jsonRecipients, frame));
+            metrics.recordText(frame, jsonRecipients.size());
+        }
+        for (WebSocket sender : jsonSenders) {
+            List<DrawEvent> others = new ArrayList<>(events.size());
+            for (int i = 0; i < events.size(); i++) {
+                if (senders.get(i) != sender) {
+                    others.add(events.get(i));
+                }
+            }
+            if (!others.isEmpty()) {
+                String frame = writeDrawEvents(others);
+                broadcast(frame, historyStreamer.holdLive(List.of(sender), frame));
+                metrics.recordText(frame, 1);
+            }
+        }
+        if (!binaryRecipients.isEmpty() || !binarySenders.isEmpty()) {
+            BinaryDrawCodec.RoomDictionary dictionary = roomDictionaries.computeIfAbsent(roomId,
+                    id -> new BinaryDrawCodec.RoomDictionary());
+            // Codificar y enviar bajo el mismo lock para que los DEFINE lleguen en orden
+            synchronized (dictionary) {
+                ByteBuffer frame = BinaryDrawCodec.encode(events, dictionary);
+                if (!binaryRecipients.isEmpty()) {
+                    metrics.recordBinary(frame.remaining(), binaryRecipients.size());
+                    broadcast(frame, historyStreamer.holdLive(binaryRecipients, frame));
+                }
+                for (WebSocket sender : binarySenders) {
+                    // Aunque no le quede ningún evento, los DEFINE del frame también son para él
+                    ByteBuffer own = BinaryDrawCodec.withoutEvents(frame, events, i -> senders.get(i) == sender);
+                    metrics.recordBinary(own.remaining(), 1);
+                    broadcast(own, historyStreamer.holdLive(List.of(sender), own));
+                }
+            }
+        }
     }
 
-    private void broadcastToAll(String message) {
-        allConnections.forEach(conn -> sendMessage(conn, message));
+    private void recordDropped(WebSocket conn, List<DrawEvent> events, List<WebSocket> senders) {
+        List<Long> dropped = droppedSequences.computeIfAbsent(conn, key -> new ArrayList<>());
+        for (int i = 0; i < events.size(); i++) {
+            // Los suyos tampoco los iba a recibir
+            if (senders.get(i) != conn) {
+                dropped.add(events.get(i).getSequence());
+            }
+        }
+    }
+
+    /**
+     * Se llama desde el buzón de la sala, el mismo que registra los descartes, y antes de
+     * encolar el siguiente frame de dibujo para la conexión, así el aviso le llega primero.
+     */
+    private void notifyDropped(WebSocket conn, String roomId) {
+        if (droppedSequences.isEmpty()) {
+            return;
+        }
+        List<Long> dropped = droppedSequences.remove(conn);
+        if (dropped != null && !dropped.isEmpty()) {
+            sendMessage(conn, createResponse("EVENTS_DROPPED", "Eventos descartados por congestión",
+                    Map.of("roomId", roomId, "sequences", dropped)));
+        }
+    }
+
+    private static String writeDrawEvents(List<DrawEvent> events) {
+        return events.size() == 1
+                ? DrawEventCodec.writeDrawEvent(events.get(0))
+                : DrawEventCodec.writeDrawEventsBatch(events);
+    }
+
+    private void addToRoomIndex(String roomId, WebSocket conn) {
+        if (!binaryConnections.containsKey(conn)) {
+            roomConnections.computeIfAbsent(roomId, id -> ConcurrentHashMap.newKeySet()).add(conn);
+            return;
+        }
+
+        // Un cliente binario necesita el diccionario actual de la sala antes de recibir eventos
+        BinaryDrawCodec.RoomDictionary dictionary = roomDictionaries.computeIfAbsent(roomId,
+                id -> new BinaryDrawCodec.RoomDictionary());
+        synchronized (dictionary) {
+            roomConnections.computeIfAbsent(roomId, id -> ConcurrentHashMap.newKeySet()).add(conn);
+            if (conn.isOpen()) {
+                ByteBuffer frame = BinaryDrawCodec.encodeDictionary(dictionary);
+                metrics.recordBinary(frame.remaining(), 1);
+                conn.send(frame);
+            }
+        }
+    }
+
+    private void removeFromRoomIndex(String roomId, WebSocket conn) {
+        // computeIfPresent es atómico por clave, así que no se pierde un alta concurrente
+        roomConnections.computeIfPresent(roomId, (id, members) -> {
+            members.remove(conn);
+            if (members.isEmpty()) {
+                roomDictionaries.remove(id);
+                roomSequencer.removeRoom(id);
+                DrawEventBatcher batcher = drawEventBatcher;
+                if (batcher != null) {
+                    batcher.removeRoom(id);
+                }
+                return null;
+            }
+            return members;
+        });
+    }
+
+    private void broadcastToLobby(Collection<WebSocket> subscribers, String message, boolean droppable) {
+        List<WebSocket> recipients = new ArrayList<>(subscribers.size());
+        for (WebSocket conn : subscribers) {
+            if (conn.isOpen() && admit(conn, droppable)) {
+                recipients.add(conn);
+            }
+        }
+        if (!recipients.isEmpty()) {
+            broadcast(message, recipients);
+            metrics.recordText(message, recipients.size());
+        }
+    }
+
+    /**
+     * Los que aún reciben el historial entran siempre: sus frames en vivo quedan retenidos
+     * hasta HISTORY_END, con su propio límite, en lugar de pasar por la política de clientes lentos.
+     */
+    private boolean isLiveRecipient(WebSocket conn, boolean droppable) {
+        return historyStreamer.isStreaming(conn) || admit(conn, droppable);
+    }
+
+    /**
+     * Aplica la política de clientes lentos antes de encolar un mensaje para la conexión.
+     */
+    private boolean admit(WebSocket conn, boolean droppable) {
+        return switch (backpressure.check(conn, droppable)) {
+            case SEND -> true;
+            case DROP -> false;
+            case EVICT -> {
+                log.atWarn().addKeyValue("remote", conn.getRemoteSocketAddress())
+                        .addKeyValue("roomId", connectionToRoomId.get(conn))
+                        .addKeyValue("evicted", backpressure.getEvictedConsumers())
+                        .addKeyValue("droppedFrames", backpressure.getDroppedFrames())
+                        .log("Desconectando cliente lento");
+                conn.close(CLOSE_RESYNC_REQUIRED, "RESYNC_REQUIRED");
+                yield false;
+            }
+        };
     }
 
     public void handleCreateRoom(WebSocket conn, JsonObject message) {
@@ -241,30 +733,14 @@ public class DrawWebSocketServer extends WebSocketServer {
 
             sendMessage(conn, createResponse("ROOM_CREATED", "Sala creada exitosamente", roomData));
             
-            System.out.println("Room created successfully: " + room.getId());
+            log.atInfo().addKeyValue("roomId", room.getId()).addKeyValue("maxUsers", maxUsers)
+                    .log("Room created successfully");
             
-            // Notificar a todos los clientes conectados sobre la nueva sala
-            try {
-                var allRooms = roomService.getAllRooms();
-                var roomsData = allRooms.stream()
-                    .map(r -> Map.of(
-                        "id", r.getId(),
-                        "name", r.getName(),
-                        "maxParticipants", r.getMaxParticipants(),
-                        "currentParticipantsCount", r.getCurrentParticipantsCount(),
-                        "createdAt", r.getCreatedAt().toString()
-                    ))
-                    .toList();
-                
-                Map<String, Object> updateResponse = Map.of("rooms", roomsData);
-                broadcastToAll(createResponse("ROOMS_UPDATED", "Lista de salas actualizada", updateResponse));
-            } catch (Exception ex) {
-                System.err.println("Error broadcasting room update: " + ex.getMessage());
-            }
+            // Notificar la nueva sala a los clientes del lobby
+            lobbyFeed.roomsChanged();
 
         } catch (Exception e) {
-            System.err.println("Error creating room: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error creating room", e);
             sendMessage(conn, createResponse("ERROR", "Error interno del servidor al crear la sala", null));
         }
     }
@@ -275,73 +751,211 @@ public class DrawWebSocketServer extends WebSocketServer {
 
         if (userId != null && roomId != null) {
             roomService.leaveRoom(roomId, userId);
+            log.atInfo().addKeyValue("roomId", roomId).addKeyValue("userId", userId).log("Usuario salió de la sala");
             connectionToUserId.remove(conn);
             connectionToRoomId.remove(conn);
+            droppedSequences.remove(conn);
+            historyStreamer.cancel(conn);
 
             sendMessage(conn, createResponse("ROOM_LEFT", "Has salido de la sala", null));
+            lobbyFeed.subscribe(conn);
             
-            // Obtener información actualizada de la sala después de que el usuario salga
-            roomService.getRoomById(roomId).ifPresent(room -> {
-                // Convertir Set a List para JSON
-                List<String> participantsList = new ArrayList<>(room.getParticipants());
-                
-                Map<String, Object> userLeftData = Map.of(
-                        "userId", userId,
-                        "roomId", roomId,
-                        "participants", participantsList,
-                        "maxParticipants", room.getMaxParticipants(),
-                        "currentParticipantsCount", room.getCurrentParticipantsCount()
-                );
-                broadcastToRoom(roomId, createResponse("USER_LEFT", "Usuario salio de la sala", userLeftData));
-            });
+            roomSequencer.execute(roomId, () -> removeAndNotifyUserLeft(conn, roomId, userId, "Usuario salio de la sala"));
 
-            // Actualizar la lista de salas para todos los clientes
-            broadcastRoomListUpdate();
+            // Actualizar la lista de salas en el lobby
+            lobbyFeed.roomsChanged();
         }
     }
 
+    /**
+     * Da de baja la conexión del índice de la sala y avisa al resto. Se ejecuta en el
+     * buzón de la sala para quedar detrás de cualquier alta pendiente de esa conexión.
+     */
+    private void removeAndNotifyUserLeft(WebSocket conn, String roomId, String userId, String message) {
+        removeFromRoomIndex(roomId, conn);
+
+        // Obtener información actualizada de la sala después de que el usuario salga
+        roomService.getRoomById(roomId).ifPresent(room -> {
+            // Convertir Set a List para JSON
+            List<String> participantsList = new ArrayList<>(room.getParticipants());
+
+            Map<String, Object> userLeftData = Map.of(
+                    "userId", userId,
+                    "roomId", roomId,
+                    "participants", participantsList,
+                    "maxParticipants", room.getMaxParticipants(),
+                    "currentParticipantsCount", room.getCurrentParticipantsCount()
+            );
+            broadcastToRoom(roomId, createResponse("USER_LEFT", message, userLeftData));
+        });
+    }
+
     private void handleJoinRoom(WebSocket conn, JsonObject message) {
         String roomId = message.get("roomId").getAsString();
         String userId = message.get("userId").getAsString();
 
+        if (!isValidUserId(conn, userId) || redirectIfRemote(conn, roomId)) {
+            return;
+        }
+
         if (roomService.joinRoom(roomId, userId)) {
-            connectionToUserId.put(conn, userId);
-            connectionToRoomId.put(conn, roomId);
+            enterRoom(conn, roomId, userId, -1);
+        } else {
+            sendMessage(conn, createResponse("ERROR", "No se pudo unir a la sala", null));
+        }
+    }
 
-            // Enviar historial de eventos de dibujo
-            roomService.getRoomById(roomId).ifPresent(room -> {
-                // Convertir Set a List para JSON
-                List<String> participantsList = new ArrayList<>(room.getParticipants());
-                
+    /**
+     * El userId viaja en los DEFINE del protocolo binario, que tienen la longitud acotada.
+     */
+    private boolean isValidUserId(WebSocket conn, String userId) {
+        if (BinaryDrawCodec.fitsValue(userId)) {
+            return true;
+        }
+        sendMessage(conn, createResponse("ERROR", "userId demasiado largo", null));
+        return false;
+    }
+
+    /**
+     * Reconexión: el cliente indica la secuencia del último evento que aplicó y solo
+     * recibe los que le faltan. Si ya no están en la ventana retenida recibe el historial completo.
+     */
+    private void handleResume(WebSocket conn, JsonObject message) {
+        String roomId = message.get("roomId").getAsString();
+        String userId = message.get("userId").getAsString();
+        long lastSequence = message.get("lastSequence").getAsLong();
+
+        if (!isValidUserId(conn, userId) || redirectIfRemote(conn, roomId)) {
+            return;
+        }
+
+        // La conexión anterior puede seguir abierta si el corte no llegó a detectarse
+        detachStaleConnections(conn, roomId, userId);
+
+        boolean participant = roomService.getRoomById(roomId)
+                .map(room -> room.hasParticipant(userId))
+                .orElse(false);
+        if (participant || roomService.joinRoom(roomId, userId)) {
+            enterRoom(conn, roomId, userId, Math.max(0, lastSequence));
+        } else {
+            sendMessage(conn, createResponse("ERROR", "No se pudo reanudar la sesión en la sala", null));
+        }
+    }
+
+    /**
+     * Si la sala pertenece a otro nodo, indica al cliente a cuál conectarse para repetir la petición.
+     */
+    private boolean redirectIfRemote(WebSocket conn, String roomId) {
+        if (clusterRing.isLocal(roomId)) {
+            return false;
+        }
+        ClusterNode owner = clusterRing.ownerOf(roomId);
+        sendMessage(conn, createResponse("REDIRECT", "La sala está en otro nodo",
+                Map.of("roomId", roomId, "nodeId", owner.id(), "url", owner.url())));
+        return true;
+    }
+
+    /**
+     * Quita de la sala las conexiones anteriores del mismo usuario sin darle de baja como
+     * participante, para que su cierre no expulse a la sesión reanudada.
+     */
+    private void detachStaleConnections(WebSocket conn, String roomId, String userId) {
+        for (Map.Entry<WebSocket, String> entry : connectionToUserId.entrySet()) {
+            WebSocket stale = entry.getKey();
+            if (stale != conn && userId.equals(entry.getValue()) && roomId.equals(connectionToRoomId.get(stale))) {
+                connectionToUserId.remove(stale);
+                connectionToRoomId.remove(stale);
+                roomSequencer.execute(roomId, () -> removeFromRoomIndex(roomId, stale));
+                stale.close(CloseFrame.NORMAL, "Sesión reanudada en otra conexión");
+            }
+        }
+    }
+
+    /**
+     * Da de alta la conexión en la sala y le envía el historial. Con {@code resumeFrom} negativo
+     * es un JOIN_ROOM normal; si no, solo se envían los eventos posteriores a esa secuencia.
+     */
+    private void enterRoom(WebSocket conn, String roomId, String userId, long resumeFrom) {
+        log.atInfo().addKeyValue("roomId", roomId).addKeyValue("userId", userId)
+                .log(resumeFrom < 0 ? "Usuario unido a la sala" : "Sesión reanudada en la sala");
+        lobbyFeed.unsubscribe(conn);
+        // El historial que va a recibir sustituye a lo que se le hubiera descartado antes
+        droppedSequences.remove(conn);
+        connectionToUserId.put(conn, userId);
+        String previousRoomId = connectionToRoomId.put(conn, roomId);
+        if (previousRoomId != null && !previousRoomId.equals(roomId)) {
+            roomSequencer.execute(previousRoomId, () -> removeFromRoomIndex(previousRoomId, conn));
+        }
+        // Una sala con el historial en disco se recarga aquí, en el hilo del mensaje: en el buzón
+        // la lectura y el pliegue retrasarían los eventos de todas las salas que comparten su hilo
+        roomService.getRoomById(roomId).ifPresent(room -> {
+            try {
+                room.loadHistory();
+            } catch (RuntimeException e) {
+                // El historial se enviará leyéndolo directamente del fichero
+                log.atWarn().addKeyValue("roomId", roomId).log("No se pudo recargar el historial: {}", e.getMessage());
+            }
+        });
+        // El alta en el índice y la captura del historial van en el buzón de la sala, así el
+        // historial termina justo antes del primer evento en vivo. La transferencia empieza
+        // antes del alta para que los eventos en vivo queden retenidos hasta HISTORY_END
+        roomSequencer.execute(roomId, () -> roomService.getRoomById(roomId).ifPresent(room -> {
+            if (!roomId.equals(connectionToRoomId.get(conn))) {
+                // La conexión salió o cambió de sala antes de que se procesara el alta
+                return;
+            }
+            // Convertir Set a List para JSON
+            List<String> participantsList = new ArrayList<>(room.getParticipants());
+
+            if (resumeFrom < 0) {
+                HistoryCursor history = room.openHistory();
                 Map<String, Object> roomData = Map.of(
                         "roomId", roomId,
                         "roomName", room.getName(),
                         "maxParticipants", room.getMaxParticipants(),
                         "currentParticipantsCount", room.getCurrentParticipantsCount(),
-                        "drawEvents", room.getDrawEvents(),
+                        "historySize", history.size(),
                         "participants", participantsList);
                 sendMessage(conn, createResponse("ROOM_JOINED", "Te has unido a la sala", roomData));
 
-                // Notificar a otros usuarios con información completa de la sala
-                Map<String, Object> userJoinedData = Map.of(
-                        "userId", userId,
+                // Enviar historial de eventos de dibujo por bloques
+                streamHistory(conn, roomId, history);
+            } else {
+                Optional<HistoryCursor> missing = roomService.openHistorySince(roomId, resumeFrom);
+                // Fuera de la ventana retenida el cliente tiene que descartar su lienzo y repetir el historial completo
+                HistoryCursor history = missing.orElseGet(room::openHistory);
+                Map<String, Object> roomData = Map.of(
                         "roomId", roomId,
-                        "participants", participantsList,
+                        "roomName", room.getName(),
                         "maxParticipants", room.getMaxParticipants(),
-                        "currentParticipantsCount", room.getCurrentParticipantsCount()
-                );
-                broadcastToRoom(roomId, createResponse("USER_JOINED", "Nuevo usuario se unió",
-                        userJoinedData), conn);
-            });
-
-            // Actualizar la lista de salas para todos los clientes
-            broadcastRoomListUpdate();
-        } else {
-            sendMessage(conn, createResponse("ERROR", "No se pudo unir a la sala", null));
-        }
+                        "currentParticipantsCount", room.getCurrentParticipantsCount(),
+                        "fromSequence", missing.isPresent() ? resumeFrom : 0,
+                        "fullHistory", missing.isEmpty(),
+                        "historySize", history.size(),
+                        "participants", participantsList);
+                sendMessage(conn, createResponse("ROOM_RESUMED", "Sesión reanudada", roomData));
+                streamHistory(conn, roomId, history);
+            }
+            addToRoomIndex(roomId, conn);
+
+            // Notificar a otros usuarios con información completa de la sala
+            Map<String, Object> userJoinedData = Map.of(
+                    "userId", userId,
+                    "roomId", roomId,
+                    "participants", participantsList,
+                    "maxParticipants", room.getMaxParticipants(),
+                    "currentParticipantsCount", room.getCurrentParticipantsCount()
+            );
+            broadcastToRoom(roomId, createResponse("USER_JOINED", "Nuevo usuario se unió",
+                    userJoinedData), conn);
+        }));
+
+        // Actualizar la lista de salas en el lobby
+        lobbyFeed.roomsChanged();
     }
 
-    private void handleDrawEvent(WebSocket conn, JsonObject message) {
+    private void handleDrawEvent(WebSocket conn, DrawEventCodec.IncomingMessage message) {
+        long receivedNanos = System.nanoTime();
         String userId = connectionToUserId.get(conn);
         String roomId = connectionToRoomId.get(conn);
 
@@ -351,23 +965,7 @@ public class DrawWebSocketServer extends WebSocketServer {
         }
 
         try {
-            JsonObject eventData = message.getAsJsonObject("eventData");
-            DrawEventType eventType = DrawEventType.valueOf(eventData.get("type").getAsString());
-            
-            DrawData drawData = null;
-            
-            // Extraer datos de dibujo si están presentes
-            if (eventData.has("x") && eventData.has("y") && eventData.has("color") && eventData.has("strokeWidth")) {
-                double x = eventData.get("x").getAsDouble();
-                double y = eventData.get("y").getAsDouble();
-                String color = eventData.get("color").getAsString();
-                double strokeWidth = eventData.get("strokeWidth").getAsDouble();
-                // Siempre incluir la herramienta, por defecto "brush"
-                String tool = eventData.has("tool") && !eventData.get("tool").isJsonNull() ? 
-                    eventData.get("tool").getAsString() : "brush";
-                
-                drawData = new DrawData(color, strokeWidth, x, y, tool);
-            }
+            DrawEventType eventType = DrawEventType.valueOf(message.eventType);
 
             DrawEvent drawEvent = new DrawEvent(
                     UUID.randomUUID().toString(),
@@ -375,59 +973,28 @@ public class DrawWebSocketServer extends WebSocketServer {
                     LocalDateTime.now(),
                     userId,
                     eventType,
-                    drawData);
-
-            roomService.addDrawEvent(roomId, drawEvent);
+                    message.drawData);
 
-            // Crear respuesta con todos los datos necesarios para el frontend
-            Map<String, Object> eventResponse = new HashMap<>();
-            eventResponse.put("eventId", drawEvent.getId());
-            eventResponse.put("userId", drawEvent.getUserId());
-            eventResponse.put("timestamp", drawEvent.getTimestamp().toString());
-            eventResponse.put("type", drawEvent.getType().toString());
-            
-            if (drawData != null) {
-                Map<String, Object> drawDataMap = Map.of(
-                    "x", drawData.getX(),
-                    "y", drawData.getY(),
-                    "color", drawData.getColor(),
-                    "strokeWidth", drawData.getStrokeWidth(),
-                    "tool", drawData.getTool()
-                );
-                eventResponse.put("drawData", drawDataMap);
-            }
-
-            // Retransmitir el evento solo a otros usuarios en la sala (NO al remitente)
-            broadcastToRoom(roomId, createResponse("DRAW_EVENT", "Evento de dibujo", eventResponse), conn);
+            // Secuenciar, guardar y publicar en un solo paso dentro del buzón de la sala
+            roomSequencer.execute(roomId, () -> publishDrawEvent(conn, roomId, drawEvent, receivedNanos));
             
         } catch (Exception e) {
-            System.err.println("Error processing draw event: " + e.getMessage());
-            e.printStackTrace();
+            log.atError().addKeyValue("roomId", roomId).addKeyValue("userId", userId).setCause(e)
+                    .log("Error processing draw event");
             sendMessage(conn, createResponse("ERROR", "Error procesando evento de dibujo", null));
         }
     }
 
-    /**
-     * Método para enviar la lista actualizada de salas a todos los clientes conectados
-     */
-    private void broadcastRoomListUpdate() {
-        try {
-            var allRooms = roomService.getAllRooms();
-            var roomsData = allRooms.stream()
-                .map(room -> Map.of(
-                    "id", room.getId(),
-                    "name", room.getName(),
-                    "maxParticipants", room.getMaxParticipants(),
-                    "currentParticipantsCount", room.getCurrentParticipantsCount(),
-                    "createdAt", room.getCreatedAt().toString()
-                ))
-                .toList();
-            
-            Map<String, Object> updateResponse = Map.of("rooms", roomsData);
-            broadcastToAll(createResponse("ROOMS_UPDATED", "Lista de salas actualizada", updateResponse));
-        } catch (Exception e) {
-            System.err.println("Error broadcasting room list update: " + e.getMessage());
-            e.printStackTrace();
-        }
+    private void publishDrawEvent(WebSocket conn, String roomId, DrawEvent drawEvent, long receivedNanos) {
+        roomService.addDrawEvent(roomId, drawEvent).ifPresent(sequenced -> {
+            // Retransmitir el evento solo a otros usuarios en la sala (NO al remitente)
+            DrawEventBatcher batcher = drawEventBatcher;
+            if (batcher != null) {
+                batcher.submit(roomId, conn, sequenced);
+            } else {
+                broadcastDrawEvents(roomId, List.of(sequenced), List.of(conn));
+            }
+            metrics.recordDrawEvent(roomId, receivedNanos);
+        });
     }
 }
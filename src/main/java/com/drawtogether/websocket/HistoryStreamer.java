@@ -0,0 +1,259 @@
+package com.drawtogether.websocket;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.java_websocket.WebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.HistoryCursor;
+
+/**
+ * Envía el historial de una sala en bloques HISTORY_CHUNK seguidos de HISTORY_END.
+ *
+ * Cada bloque se genera justo antes de enviarlo y solo mientras lo pendiente de la conexión
+ * no pase de {@code windowBytes}, de modo que un cliente lento no retiene en memoria más que
+ * esa ventana. Al llenarse la transferencia se aparca sin ocupar hilo, y la reanuda la
+ * escritura en el socket que la vacía ({@link #written}). Las transferencias se reparten
+ * entre unos pocos hilos y ceden el suyo cada {@code CHUNKS_PER_TURN} bloques.
+ *
+ * Mientras dura la transferencia, los frames en vivo de la sala para esa conexión se
+ * retienen ({@link #holdLive}) y se envían justo después de HISTORY_END: el cliente nunca
+ * recibe un evento en vivo antes de terminar el historial.
+ */
+final class HistoryStreamer {
+    private static final Logger log = LoggerFactory.getLogger(HistoryStreamer.class);
+
+    interface Frames {
+        String chunk(int index, List<DrawEvent> events);
+
+        String end(int chunks, long sequence);
+    }
+
+    private static final int CHUNKS_PER_TURN = 8;
+
+    private final int chunkEvents;
+    private final long windowBytes;
+    private final long maxHeldBytes;
+    private final ExecutorService workers;
+    private final Map<WebSocket, Transfer> transfers = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxHeldBytes frames en vivo que se pueden retener por conexión; si se superan,
+     *                     la conexión se cierra pidiendo al cliente que se vuelva a sincronizar
+     */
+    HistoryStreamer(int chunkEvents, long windowBytes, long maxHeldBytes) {
+        this.chunkEvents = Math.max(1, chunkEvents);
+        this.windowBytes = windowBytes;
+        this.maxHeldBytes = maxHeldBytes;
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "history-streamer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Empieza a enviar el historial. Desde este momento se retienen los frames en vivo para la
+     * conexión, así que hay que llamarlo antes de darla de alta en la sala. Una transferencia
+     * anterior a la misma conexión se cancela.
+     */
+    void stream(WebSocket conn, HistoryCursor cursor, Frames frames) {
+        Transfer transfer = new Transfer(conn, cursor, frames);
+        Transfer previous = transfers.put(conn, transfer);
+        if (previous != null) {
+            previous.cancel();
+        }
+        workers.execute(transfer);
+    }
+
+    /**
+     * Aviso de escritura en el socket de la conexión: si su transferencia esperaba a que se
+     * vaciara la ventana, vuelve a la cola de los hilos de envío.
+     */
+    void written(WebSocket conn, long pendingBytes) {
+        if (pendingBytes > windowBytes || transfers.isEmpty()) {
+            return;
+        }
+        Transfer transfer = transfers.get(conn);
+        if (transfer != null && transfer.parked.compareAndSet(true, false)) {
+            workers.execute(transfer);
+        }
+    }
+
+    /**
+     * Cancela la transferencia en curso a la conexión, si la hay, descartando lo retenido.
+     */
+    void cancel(WebSocket conn) {
+        Transfer transfer = transfers.remove(conn);
+        if (transfer != null) {
+            transfer.cancel();
+        }
+    }
+
+    boolean isStreaming(WebSocket conn) {
+        return !transfers.isEmpty() && transfers.containsKey(conn);
+    }
+
+    /**
+     * Retiene el frame para los destinatarios que aún reciben el historial y devuelve los
+     * demás, a los que se puede enviar ya.
+     */
+    List<WebSocket> holdLive(List<WebSocket> recipients, String frame) {
+        return holdLive(recipients, frame, frame.length());
+    }
+
+    List<WebSocket> holdLive(List<WebSocket> recipients, ByteBuffer frame) {
+        return holdLive(recipients, frame, frame.remaining());
+    }
+
+    private List<WebSocket> holdLive(List<WebSocket> recipients, Object frame, long bytes) {
+        if (transfers.isEmpty()) {
+            return recipients;
+        }
+        List<WebSocket> ready = null;
+        for (int i = 0; i < recipients.size(); i++) {
+            WebSocket conn = recipients.get(i);
+            Transfer transfer = transfers.get(conn);
+            boolean held = transfer != null
+                    && transfer.hold(frame instanceof ByteBuffer buffer ? buffer.duplicate() : frame, bytes);
+            if (held && ready == null) {
+                ready = new ArrayList<>(recipients.subList(0, i));
+            } else if (!held && ready != null) {
+                ready.add(conn);
+            }
+        }
+        return ready != null ? ready : recipients;
+    }
+
+    private final class Transfer implements Runnable {
+        private final WebSocket conn;
+        private final HistoryCursor cursor;
+        private final Frames frames;
+        private final AtomicBoolean parked = new AtomicBoolean();
+        private int chunks;
+        // Protegidos por el monitor de la transferencia
+        private List<Object> held = new ArrayList<>();
+        private long heldBytes;
+        private boolean done;
+
+        private Transfer(WebSocket conn, HistoryCursor cursor, Frames frames) {
+            this.conn = conn;
+            this.cursor = cursor;
+            this.frames = frames;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int sent = 0;
+                while (conn.isOpen() && cursor.hasNext()) {
+                    if (isDone()) {
+                        return;
+                    }
+                    if (TrackedDraft.pendingBytes(conn) > windowBytes && park()) {
+                        return;
+                    }
+                    if (sent++ == CHUNKS_PER_TURN) {
+                        // Ceder el hilo a las demás transferencias
+                        workers.execute(this);
+                        return;
+                    }
+                    conn.send(frames.chunk(chunks++, cursor.next(chunkEvents)));
+                }
+                if (conn.isOpen()) {
+                    finish();
+                }
+            } catch (Exception e) {
+                log.warn("Error enviando historial: {}", e.getMessage());
+                // Sin HISTORY_END el cliente no sabe dónde empieza lo que recibe en vivo
+                cancel();
+                conn.close(DrawWebSocketServer.CLOSE_RESYNC_REQUIRED, "RESYNC_REQUIRED");
+            } finally {
+                if (isDone() || !conn.isOpen()) {
+                    cancel();
+                    transfers.remove(conn, this);
+                    // Solo lo cierra el hilo que lo recorre: el cursor puede estar leyendo de disco
+                    cursor.close();
+                }
+            }
+        }
+
+        /**
+         * Aparca la transferencia hasta el siguiente {@link #written}. Se vuelve a mirar lo
+         * pendiente después de aparcar por si la escritura que la reanudaba llegó en medio;
+         * devuelve false si hay que seguir enviando.
+         */
+        private boolean park() {
+            parked.set(true);
+            if (TrackedDraft.pendingBytes(conn) <= windowBytes && parked.compareAndSet(true, false)) {
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * HISTORY_END y lo retenido salen bajo el mismo monitor que {@link #hold}: un frame
+         * en vivo o queda retenido y sale aquí, o se envía después.
+         */
+        private synchronized void finish() {
+            if (done) {
+                return;
+            }
+            conn.send(frames.end(chunks, cursor.getSequence()));
+            for (Object frame : held) {
+                if (frame instanceof ByteBuffer buffer) {
+                    conn.send(buffer);
+                } else {
+                    conn.send((String) frame);
+                }
+            }
+            held = null;
+            done = true;
+        }
+
+        private synchronized boolean hold(Object frame, long bytes) {
+            if (done) {
+                return false;
+            }
+            heldBytes += bytes;
+            if (heldBytes > maxHeldBytes) {
+                log.atWarn().addKeyValue("remote", conn.getRemoteSocketAddress()).addKeyValue("heldBytes", heldBytes)
+                        .log("Demasiados eventos en vivo retenidos durante el historial, desconectando");
+                held = null;
+                done = true;
+                conn.close(DrawWebSocketServer.CLOSE_RESYNC_REQUIRED, "RESYNC_REQUIRED");
+                // Lo que llegue después ya no sirve al cliente, que tiene que volver a sincronizarse
+                return true;
+            }
+            held.add(frame);
+            return true;
+        }
+
+        private synchronized boolean isDone() {
+            return done;
+        }
+
+        private void cancel() {
+            synchronized (this) {
+                held = null;
+                done = true;
+            }
+            // Aparcada no la vuelve a ejecutar ningún hilo, así que el cursor se cierra aquí
+            if (parked.compareAndSet(true, false)) {
+                cursor.close();
+            }
+        }
+    }
+}
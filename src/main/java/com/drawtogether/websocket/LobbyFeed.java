@@ -0,0 +1,147 @@
+package com.drawtogether.websocket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.java_websocket.WebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.drawtogether.model.RoomSummary;
+import com.drawtogether.service.RoomListSnapshot;
+
+/**
+ * Lista de salas para los clientes que están en el lobby (conectados pero fuera de una sala).
+ *
+ * Los cambios se acumulan durante un intervalo corto y se publican como un único
+ * ROOMS_DELTA con las salas añadidas, cambiadas y eliminadas desde la versión anterior.
+ * La lista completa solo se envía al entrar al lobby o cuando el cliente pide resincronizar
+ * porque le falta una versión. Todo el trabajo se hace en un único hilo, así la lista
+ * completa y los deltas que le siguen salen siempre en orden.
+ */
+final class LobbyFeed {
+    private static final Logger log = LoggerFactory.getLogger(LobbyFeed.class);
+
+    interface Frames {
+        String full(RoomListSnapshot rooms);
+
+        String delta(long version, long previousVersion, List<Map<String, Object>> changes);
+    }
+
+    interface Sender {
+        void send(Collection<WebSocket> recipients, String message, boolean droppable);
+    }
+
+    private final Supplier<RoomListSnapshot> rooms;
+    private final Frames frames;
+    private final Sender sender;
+    private final long intervalMs;
+    private final ScheduledExecutorService scheduler;
+    private final Set<WebSocket> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Última lista publicada; solo se toca desde el hilo del feed
+    private RoomListSnapshot published;
+
+    LobbyFeed(Supplier<RoomListSnapshot> rooms, Frames frames, Sender sender, long intervalMs) {
+        this.rooms = rooms;
+        this.published = rooms.get();
+        this.frames = frames;
+        this.sender = sender;
+        this.intervalMs = Math.max(0, intervalMs);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lobby-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * La conexión entra al lobby y recibe la lista completa de la última versión publicada.
+     */
+    void subscribe(WebSocket conn) {
+        scheduler.execute(() -> {
+            if (conn.isOpen() && subscribers.add(conn)) {
+                sendFull(conn);
+            }
+        });
+    }
+
+    void unsubscribe(WebSocket conn) {
+        subscribers.remove(conn);
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * El cliente tiene la versión {@code clientVersion}; si no es la actual recibe la lista completa.
+     */
+    void resync(WebSocket conn, long clientVersion) {
+        scheduler.execute(() -> {
+            if (clientVersion != published.getVersion()) {
+                sendFull(conn);
+            }
+        });
+    }
+
+    /**
+     * Avisa de que alguna sala cambió; el delta se calcula y publica al vencer el intervalo.
+     */
+    void roomsChanged() {
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::publish, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void publish() {
+        scheduled.set(false);
+        try {
+            RoomListSnapshot current = rooms.get();
+            if (current.getVersion() == published.getVersion()) {
+                return;
+            }
+
+            List<Map<String, Object>> changes = new ArrayList<>();
+            Map<String, RoomSummary> previousRooms = published.getRooms();
+            for (RoomSummary summary : current.getRooms().values()) {
+                RoomSummary previous = previousRooms.get(summary.id());
+                if (previous == null) {
+                    changes.add(Map.of("op", "ROOM_ADDED", "room", summary));
+                } else if (!previous.equals(summary)) {
+                    changes.add(Map.of("op", "ROOM_CHANGED", "room", summary));
+                }
+            }
+            for (String id : previousRooms.keySet()) {
+                if (!current.getRooms().containsKey(id)) {
+                    changes.add(Map.of("op", "ROOM_REMOVED", "id", id));
+                }
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+
+            long previousVersion = published.getVersion();
+            published = current;
+            if (!subscribers.isEmpty()) {
+                // Un delta perdido por congestión se recupera con la resincronización del cliente
+                sender.send(subscribers, frames.delta(current.getVersion(), previousVersion, changes), true);
+            }
+        } catch (Exception e) {
+            log.warn("Error publicando cambios de salas: {}", e.getMessage());
+        }
+    }
+
+    private void sendFull(WebSocket conn) {
+        sender.send(List.of(conn), frames.full(published), false);
+    }
+}
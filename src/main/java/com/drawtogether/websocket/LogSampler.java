@@ -0,0 +1,43 @@
+package com.drawtogether.websocket;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * Muestreo de los logs de depuración que se generan por cada mensaje: deja pasar como
+ * mucho {@code perSecond} por segundo y, al empezar el siguiente, indica cuántos se
+ * descartaron. Con el nivel DEBUG desactivado solo cuesta comprobar el nivel.
+ */
+final class LogSampler {
+    private static final long SECOND_NANOS = 1_000_000_000L;
+
+    private final Logger log;
+    private final int perSecond;
+    private final AtomicLong window = new AtomicLong();
+    private final AtomicInteger seen = new AtomicInteger();
+
+    LogSampler(Logger log, int perSecond) {
+        this.log = log;
+        this.perSecond = perSecond;
+    }
+
+    /**
+     * Devuelve true si este evento se debe escribir.
+     */
+    boolean sample() {
+        if (perSecond <= 0 || !log.isDebugEnabled()) {
+            return false;
+        }
+        long second = System.nanoTime() / SECOND_NANOS;
+        long current = window.get();
+        if (second != current && window.compareAndSet(current, second)) {
+            int previous = seen.getAndSet(0);
+            if (previous > perSecond) {
+                log.atDebug().addKeyValue("skipped", previous - perSecond).log("Logs de mensajes descartados por muestreo");
+            }
+        }
+        return seen.incrementAndGet() <= perSecond;
+    }
+}
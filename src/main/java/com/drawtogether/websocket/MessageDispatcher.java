@@ -0,0 +1,77 @@
+package com.drawtogether.websocket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.java_websocket.WebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decide en qué hilo se procesa cada mensaje recibido.
+ *
+ * En modo {@link Mode#VIRTUAL} cada conexión tiene su propia cola serializada sobre hilos
+ * virtuales, así un JOIN_ROOM o una consulta pesada no bloquea el hilo de E/S que comparten
+ * otras conexiones. Los mensajes baratos (eventos de dibujo) se procesan directamente en el
+ * hilo de E/S si la cola de su conexión está vacía; si no, se encolan detrás para no
+ * adelantar a lo que la conexión envió antes. En modo {@link Mode#INLINE} todo se procesa
+ * en el hilo de E/S, como antes.
+ */
+final class MessageDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(MessageDispatcher.class);
+
+    enum Mode {
+        INLINE,
+        VIRTUAL
+    }
+
+    private final Mode mode;
+    private final ExecutorService offload;
+    private final Map<WebSocket, SerialExecutor> connections = new ConcurrentHashMap<>();
+
+    MessageDispatcher(Mode mode) {
+        this.mode = mode;
+        this.offload = mode == Mode.VIRTUAL
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("message-", 0).factory())
+                : null;
+    }
+
+    static Mode parseMode(String value) {
+        try {
+            return Mode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Valor invalido para MESSAGE_EXECUTION: {}, usando VIRTUAL", value);
+            return Mode.VIRTUAL;
+        }
+    }
+
+    void dispatch(WebSocket conn, boolean cheap, Runnable task) {
+        if (mode == Mode.INLINE) {
+            task.run();
+            return;
+        }
+        SerialExecutor queue = connections.computeIfAbsent(conn, key -> new SerialExecutor(offload));
+        // Los mensajes de una conexión llegan siempre por el mismo hilo de E/S, así que si la
+        // cola está vacía ahora no puede llenarse antes de ejecutar la tarea
+        if (cheap && queue.isIdle()) {
+            task.run();
+        } else {
+            queue.execute(task);
+        }
+    }
+
+    /**
+     * Último paso de una conexión: se ejecuta detrás de todo lo que tenga encolado y libera la cola.
+     */
+    void close(WebSocket conn, Runnable task) {
+        dispatch(conn, false, () -> {
+            try {
+                task.run();
+            } finally {
+                connections.remove(conn);
+            }
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package com.drawtogether.websocket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Un único escritor por sala: todo lo que modifica el historial de una sala o depende
+ * de su orden (asignar secuencia, añadir y publicar un evento, capturar el historial
+ * al unirse) se ejecuta en el buzón de esa sala, en orden y sin solaparse.
+ */
+final class RoomSequencer {
+    private final ExecutorService workers;
+    private final Map<String, SerialExecutor> mailboxes = new ConcurrentHashMap<>();
+
+    RoomSequencer() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "room-sequencer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void execute(String roomId, Runnable task) {
+        // Encolar dentro de compute evita que removeRoom descarte un buzón con trabajo recién añadido
+        mailboxes.compute(roomId, (id, mailbox) -> {
+            SerialExecutor target = mailbox != null ? mailbox : new SerialExecutor(workers);
+            target.execute(task);
+            return target;
+        });
+    }
+
+    /**
+     * Libera el buzón de la sala cuando termine lo que ya tiene encolado, salvo que
+     * para entonces haya recibido trabajo nuevo.
+     */
+    void removeRoom(String roomId) {
+        execute(roomId, () -> mailboxes.computeIfPresent(roomId,
+                (id, mailbox) -> mailbox.hasPendingTasks() ? mailbox : null));
+    }
+}
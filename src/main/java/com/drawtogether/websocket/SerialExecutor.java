@@ -0,0 +1,69 @@
+package com.drawtogether.websocket;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ejecuta las tareas de una en una y en orden de llegada sobre un executor compartido,
+ * sin dedicar un hilo a cada cola.
+ */
+final class SerialExecutor implements Executor {
+    private static final Logger log = LoggerFactory.getLogger(SerialExecutor.class);
+
+    private final Executor delegate;
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean running;
+
+    SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (tasks) {
+            tasks.add(task);
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        delegate.execute(this::drain);
+    }
+
+    /**
+     * Sin tareas en cola ni en ejecución.
+     */
+    boolean isIdle() {
+        synchronized (tasks) {
+            return !running;
+        }
+    }
+
+    boolean hasPendingTasks() {
+        synchronized (tasks) {
+            return !tasks.isEmpty();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (tasks) {
+                task = tasks.poll();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Error en tarea serializada", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.drawtogether.websocket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.drawtogether.metrics.Histogram;
+import com.drawtogether.metrics.MetricsRegistry;
+
+/**
+ * Instrumentos del servidor WebSocket. Los histogramas y contadores de cada acción se crean
+ * al arrancar, así que registrar un mensaje es solo una búsqueda en un mapa inmutable y un
+ * par de incrementos sobre {@link LongAdder}.
+ */
+final class ServerMetrics {
+    static final String DRAW_EVENT = "DRAW_EVENT";
+    private static final String OTHER = "OTHER";
+    private static final String[] ACTIONS = {
+            DRAW_EVENT, "JOIN_ROOM", "RESUME", "LEAVE_ROOM", "CREATE_ROOM", "GET_ROOMS", "SYNC_ROOMS", OTHER };
+
+    // De 50 µs a 10 s, en nanosegundos
+    private static final long[] LATENCY_BOUNDS = {
+            50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000, 25_000_000,
+            50_000_000, 100_000_000, 250_000_000, 500_000_000, 1_000_000_000, 2_500_000_000L, 5_000_000_000L,
+            10_000_000_000L };
+    private static final long[] FANOUT_BOUNDS = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024 };
+
+    private final MetricsRegistry registry;
+    private final Map<String, Histogram> actionLatency;
+    private final LongAdder textFrames;
+    private final LongAdder textBytes;
+    private final LongAdder binaryFrames;
+    private final LongAdder binaryBytes;
+    private final Histogram fanout;
+    private final Map<String, LongAdder> roomEvents = new ConcurrentHashMap<>();
+
+    ServerMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        Map<String, Histogram> latency = new HashMap<>();
+        for (String action : ACTIONS) {
+            latency.put(action, registry.histogram("drawtogether_action_duration_seconds",
+                    "Tiempo de proceso de cada mensaje por acción; DRAW_EVENT cuenta hasta publicarlo en la sala",
+                    1e-9, LATENCY_BOUNDS, "action", action));
+        }
+        this.actionLatency = Map.copyOf(latency);
+        // Los frames de texto se miden en caracteres, que coinciden con los bytes en el JSON ASCII habitual
+        this.textFrames = registry.counter("drawtogether_outbound_frames_total", "Frames enviados", "kind", "text");
+        this.binaryFrames = registry.counter("drawtogether_outbound_frames_total", "Frames enviados", "kind", "binary");
+        this.textBytes = registry.counter("drawtogether_outbound_bytes_total", "Bytes de carga útil enviados", "kind", "text");
+        this.binaryBytes = registry.counter("drawtogether_outbound_bytes_total", "Bytes de carga útil enviados", "kind", "binary");
+        this.fanout = registry.histogram("drawtogether_room_fanout_recipients",
+                "Destinatarios de cada difusión a una sala", 1, FANOUT_BOUNDS);
+        registry.counterFamily("drawtogether_room_draw_events_total", "Eventos de dibujo recibidos por sala", "room",
+                () -> snapshot(roomEvents));
+    }
+
+    MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    void recordAction(String action, long startNanos) {
+        Histogram histogram = action != null ? actionLatency.get(action) : null;
+        (histogram != null ? histogram : actionLatency.get(OTHER)).observe(System.nanoTime() - startNanos);
+    }
+
+    void recordDrawEvent(String roomId, long receivedNanos) {
+        actionLatency.get(DRAW_EVENT).observe(System.nanoTime() - receivedNanos);
+        roomEvents.computeIfAbsent(roomId, id -> new LongAdder()).increment();
+    }
+
+    void recordText(String message, int recipients) {
+        textFrames.add(recipients);
+        textBytes.add((long) message.length() * recipients);
+    }
+
+    void recordBinary(int bytes, int recipients) {
+        binaryFrames.add(recipients);
+        binaryBytes.add((long) bytes * recipients);
+    }
+
+    void recordFanout(int recipients) {
+        fanout.observe(recipients);
+    }
+
+    void removeRoom(String roomId) {
+        roomEvents.remove(roomId);
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> values = new HashMap<>();
+        counters.forEach((key, counter) -> values.put(key, counter.sum()));
+        return values;
+    }
+}
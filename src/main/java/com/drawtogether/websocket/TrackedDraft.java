@@ -0,0 +1,80 @@
+package com.drawtogether.websocket;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.handshake.Handshakedata;
+import org.java_websocket.protocols.IProtocol;
+
+/**
+ * Draft RFC 6455 que lleva la cuenta de los bytes encolados y aún no escritos en el socket.
+ *
+ * La librería crea una copia del draft para cada conexión y pasa por él todo lo que encola
+ * (handshake y frames, también los de {@code broadcast}), así que la suma es exacta sin
+ * recorrer la cola de salida. Lo escrito lo descuenta {@link TrackingSocketFactory}.
+ */
+final class TrackedDraft extends Draft_6455 {
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    TrackedDraft(List<IExtension> extensions, List<IProtocol> protocols) {
+        super(extensions, protocols);
+    }
+
+    private TrackedDraft(List<IExtension> extensions, List<IProtocol> protocols, int maxFrameSize) {
+        super(extensions, protocols, maxFrameSize);
+    }
+
+    long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Bytes pendientes de la conexión, o 0 si no usa este draft.
+     */
+    static long pendingBytes(WebSocket conn) {
+        return conn.getDraft() instanceof TrackedDraft draft ? draft.getPendingBytes() : 0;
+    }
+
+    /**
+     * Descuenta lo que se acaba de escribir en el socket y devuelve lo que queda pendiente.
+     */
+    long written(long bytes) {
+        return pendingBytes.addAndGet(-bytes);
+    }
+
+    @Override
+    public ByteBuffer createBinaryFrame(Framedata framedata) {
+        ByteBuffer frame = super.createBinaryFrame(framedata);
+        pendingBytes.addAndGet(frame.remaining());
+        return frame;
+    }
+
+    @Override
+    public List<ByteBuffer> createHandshake(Handshakedata handshakedata, boolean withcontent) {
+        List<ByteBuffer> handshake = super.createHandshake(handshakedata, withcontent);
+        for (ByteBuffer buffer : handshake) {
+            pendingBytes.addAndGet(buffer.remaining());
+        }
+        return handshake;
+    }
+
+    @Override
+    public Draft copyInstance() {
+        List<IExtension> extensions = new ArrayList<>();
+        for (IExtension extension : getKnownExtensions()) {
+            extensions.add(extension.copyInstance());
+        }
+        List<IProtocol> protocols = new ArrayList<>();
+        for (IProtocol protocol : getKnownProtocols()) {
+            protocols.add(protocol.copyInstance());
+        }
+        return new TrackedDraft(extensions, protocols, getMaxFrameSize());
+    }
+}
@@ -0,0 +1,89 @@
+package com.drawtogether.websocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketAdapter;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.WebSocketServerFactory;
+import org.java_websocket.drafts.Draft;
+
+/**
+ * Fábrica de conexiones que envuelve el canal de cada una para descontar de su
+ * {@link TrackedDraft} los bytes que se escriben en el socket y avisar de cada escritura.
+ */
+final class TrackingSocketFactory implements WebSocketServerFactory {
+
+    interface WriteListener {
+        /**
+         * Se llama desde el hilo de E/S del servidor tras cada escritura en el socket: no debe bloquear.
+         */
+        void written(WebSocket conn, long pendingBytes);
+    }
+
+    private final WriteListener listener;
+
+    TrackingSocketFactory(WriteListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public WebSocketImpl createWebSocket(WebSocketAdapter adapter, Draft draft) {
+        return new WebSocketImpl(adapter, draft);
+    }
+
+    @Override
+    public WebSocketImpl createWebSocket(WebSocketAdapter adapter, List<Draft> drafts) {
+        return new WebSocketImpl(adapter, drafts);
+    }
+
+    @Override
+    public ByteChannel wrapChannel(SocketChannel channel, SelectionKey key) {
+        return new TrackingChannel(channel, key);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private final class TrackingChannel implements ByteChannel {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+
+        private TrackingChannel(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = channel.write(src);
+            // Hasta terminar el handshake la conexión no tiene draft propio
+            if (written > 0 && key.attachment() instanceof WebSocketImpl conn
+                    && conn.getDraft() instanceof TrackedDraft draft) {
+                listener.written(conn, draft.written(written));
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.drawtogether.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class CanvasSnapshotTest {
+    private static final String ROOM = "r";
+
+    private final List<DrawEvent> events = new ArrayList<>();
+
+    @Test
+    void clearCanvasDropsEverythingBefore() {
+        stroke("a", 3);
+        add("b", DrawEventType.UNDO);
+        add("a", DrawEventType.CLEAR_CANVAS);
+        List<Long> second = stroke("b", 2);
+
+        assertEquals(second, sequences(restoreAll()));
+    }
+
+    @Test
+    void undoRemovesOnlyTheSendersLastStroke() {
+        List<Long> aFirst = stroke("a", 2);
+        List<Long> aSecond = stroke("a", 2);
+        List<Long> b = stroke("b", 2);
+        long undo = add("a", DrawEventType.UNDO);
+
+        // Lo visible primero; después el trazo deshecho seguido de su UNDO, para poder rehacerlo
+        assertEquals(concat(aFirst, b, aSecond, List.of(undo)), sequences(restoreAll()));
+    }
+
+    @Test
+    void redoRestoresTheUndoneStroke() {
+        List<Long> a = stroke("a", 3);
+        List<Long> b = stroke("b", 1);
+        add("a", DrawEventType.UNDO);
+        add("a", DrawEventType.REDO);
+
+        assertEquals(concat(b, a), sequences(restoreAll()));
+    }
+
+    @Test
+    void newStrokeDiscardsWhatCouldBeRedone() {
+        stroke("a", 2);
+        add("a", DrawEventType.UNDO);
+        List<Long> next = stroke("a", 2);
+        add("a", DrawEventType.REDO);
+
+        assertEquals(next, sequences(restoreAll()));
+    }
+
+    @Test
+    void redoWithoutUndoIsIgnored() {
+        List<Long> a = stroke("a", 2);
+        add("b", DrawEventType.REDO);
+        add("b", DrawEventType.UNDO);
+
+        assertEquals(a, sequences(restoreAll()));
+    }
+
+    @Test
+    void foldingInPiecesMatchesFoldingEverythingAtOnce() {
+        Random random = new Random(42);
+        String[] users = { "a", "b", "c" };
+        for (int i = 0; i < 5_000; i++) {
+            int kind = random.nextInt(100);
+            DrawEventType type = kind < 8 ? DrawEventType.STROKE_START : kind < 16 ? DrawEventType.STROKE_END
+                    : kind < 22 ? DrawEventType.UNDO : kind < 26 ? DrawEventType.REDO
+                    : kind < 27 ? DrawEventType.CLEAR_CANVAS : DrawEventType.STROKE_MOVE;
+            add(users[random.nextInt(users.length)], type);
+        }
+
+        CanvasSnapshot folded = CanvasSnapshot.empty(ROOM);
+        for (int from = 0; from < events.size(); from += 700) {
+            folded = folded.fold(ROOM, store(events.subList(from, Math.min(events.size(), from + 700))));
+        }
+        CanvasSnapshot whole = restoreAll();
+
+        assertEquals(events.size(), folded.getLastSequence());
+        assertEquals(sequences(whole), sequences(folded));
+        // Restaurar desde sus propios eventos deja el mismo snapshot
+        assertEquals(sequences(whole),
+                sequences(CanvasSnapshot.restore(ROOM, whole.getEvents().toList(), whole.getLastSequence())));
+    }
+
+    private List<Long> stroke(String userId, int moves) {
+        List<Long> sequences = new ArrayList<>();
+        sequences.add(add(userId, DrawEventType.STROKE_START));
+        for (int i = 0; i < moves; i++) {
+            sequences.add(add(userId, DrawEventType.STROKE_MOVE));
+        }
+        sequences.add(add(userId, DrawEventType.STROKE_END));
+        return sequences;
+    }
+
+    private long add(String userId, DrawEventType type) {
+        long sequence = events.size() + 1;
+        DrawData drawData = type.name().startsWith("STROKE") ? new DrawData("#ff0000", 2, sequence, 0, "brush") : null;
+        events.add(new DrawEvent(new UUID(0, sequence).toString(), ROOM, LocalDateTime.now(), userId, type,
+                drawData, sequence));
+        return sequence;
+    }
+
+    private CanvasSnapshot restoreAll() {
+        return CanvasSnapshot.empty(ROOM).fold(ROOM, store(events));
+    }
+
+    private static DrawEventStore store(List<DrawEvent> events) {
+        DrawEventStore store = new DrawEventStore(ROOM);
+        events.forEach(store::append);
+        return store;
+    }
+
+    private static List<Long> sequences(CanvasSnapshot snapshot) {
+        return snapshot.getEvents().toList().stream().map(DrawEvent::getSequence).toList();
+    }
+
+    @SafeVarargs
+    private static List<Long> concat(List<Long>... parts) {
+        List<Long> all = new ArrayList<>();
+        for (List<Long> part : parts) {
+            all.addAll(part);
+        }
+        return all;
+    }
+}
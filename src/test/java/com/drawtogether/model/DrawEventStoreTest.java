@@ -0,0 +1,152 @@
+package com.drawtogether.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+class DrawEventStoreTest {
+    private static final int FOOTPRINT_EVENTS = 200_000;
+    private static final String[] USERS = { "u0", "u1", "u2", "u3" };
+
+    @Test
+    void keepsEveryFieldAcrossChunks() {
+        List<DrawEvent> events = events(3_000);
+        DrawEventStore store = new DrawEventStore("r");
+        events.forEach(store::append);
+
+        assertEquals(events.size(), store.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertSameEvent(events.get(i), store.get(i));
+        }
+        assertSameEvents(events.subList(1_020, 1_030), store.slice(1_020, 1_030));
+    }
+
+    @Test
+    void appendRowsCopiesBetweenStoresWithDifferentDictionaries() {
+        List<DrawEvent> events = events(2_100);
+        DrawEventStore source = new DrawEventStore("r");
+        events.forEach(source::append);
+
+        DrawEventStore target = new DrawEventStore("r");
+        // Valores que ya ocupan los primeros ids del diccionario de destino
+        DrawEvent other = new DrawEvent(UUID.randomUUID().toString(), "r", LocalDateTime.now(), "zeta",
+                DrawEventType.STROKE_MOVE, new DrawData("#123456", 9, 0, 0, "eraser"), 1);
+        target.append(other);
+        target.appendRows(source, 1_000, 2_100);
+
+        assertEquals(1 + 1_100, target.size());
+        assertSameEvent(other, target.get(0));
+        assertSameEvents(events.subList(1_000, 2_100), target.slice(1, target.size()));
+        assertEquals(events.get(1_500).getType(), target.typeAt(501));
+        assertEquals(events.get(1_500).getUserId(), target.userAt(501));
+    }
+
+    /**
+     * Heap retenido por evento, medido tras un GC completo, frente a la lista de eventos con la
+     * que se guardaba antes el historial. Los eventos se crean como en el servidor: id y fecha
+     * propios, usuario compartido por la conexión, color y herramienta leídos de cada mensaje.
+     */
+    @Test
+    void retainsAboutOneRowPerEvent() {
+        double listBytes = retainedBytesPerEvent(() -> {
+            List<DrawEvent> history = new ArrayList<>();
+            for (int i = 0; i < FOOTPRINT_EVENTS; i++) {
+                history.add(serverEvent(i));
+            }
+            return history;
+        });
+        double storeBytes = retainedBytesPerEvent(() -> {
+            DrawEventStore history = new DrawEventStore("r");
+            for (int i = 0; i < FOOTPRINT_EVENTS; i++) {
+                history.append(serverEvent(i));
+            }
+            return history;
+        });
+
+        String measured = String.format("store %.1f bytes/evento, lista %.1f bytes/evento", storeBytes, listBytes);
+        // 69 bytes por fila (ROW_BYTES) más lo que sobra de los arrays del último bloque
+        assertTrue(storeBytes < 75, measured);
+        assertTrue(storeBytes * 3 < listBytes, measured);
+    }
+
+    private static double retainedBytesPerEvent(Supplier<Object> build) {
+        long before = usedHeapAfterGc();
+        Object history = build.get();
+        long after = usedHeapAfterGc();
+        Reference.reachabilityFence(history);
+        return (double) (after - before) / FOOTPRINT_EVENTS;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static DrawEvent serverEvent(int i) {
+        DrawData drawData = new DrawData(new String("#1e90ff"), 3, i % 1920, i % 1080, new String("brush"));
+        return new DrawEvent(UUID.randomUUID().toString(), "r", LocalDateTime.now(), USERS[i % USERS.length],
+                DrawEventType.STROKE_MOVE, drawData, i + 1);
+    }
+
+    @Test
+    void rejectsIndexesOutOfRange() {
+        DrawEventStore store = new DrawEventStore("r");
+        store.append(events(1).get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(-1));
+    }
+
+    private static List<DrawEvent> events(int count) {
+        DrawEventType[] types = DrawEventType.values();
+        List<DrawEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Algunos ids no son UUID y algunos eventos no llevan datos de dibujo
+            String id = i % 97 == 0 ? "evento-" + i : UUID.randomUUID().toString();
+            DrawData drawData = i % 5 == 0 ? null
+                    : new DrawData("#" + (i % 7), 1 + i % 3, i * 0.5, -i, i % 2 == 0 ? "brush" : "pencil");
+            LocalDateTime timestamp = LocalDateTime.of(2024, 3, 1, 12, 0).plusNanos(i * 1_234_567L);
+            events.add(new DrawEvent(id, "r", timestamp, "u" + i % 4, types[i % types.length], drawData, i + 1));
+        }
+        return events;
+    }
+
+    static void assertSameEvents(List<DrawEvent> expected, List<DrawEvent> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameEvent(expected.get(i), actual.get(i));
+        }
+    }
+
+    static void assertSameEvent(DrawEvent expected, DrawEvent actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getRoomId(), actual.getRoomId());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getSequence(), actual.getSequence());
+        DrawData expectedData = expected.getDrawData();
+        DrawData actualData = actual.getDrawData();
+        if (expectedData == null) {
+            assertNull(actualData);
+            return;
+        }
+        assertEquals(expectedData.getColor(), actualData.getColor());
+        assertEquals(expectedData.getStrokeWidth(), actualData.getStrokeWidth());
+        assertEquals(expectedData.getX(), actualData.getX());
+        assertEquals(expectedData.getY(), actualData.getY());
+        assertEquals(expectedData.getTool(), actualData.getTool());
+    }
+}
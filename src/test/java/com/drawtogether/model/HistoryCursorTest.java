@@ -0,0 +1,74 @@
+package com.drawtogether.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class HistoryCursorTest {
+
+    @Test
+    void pagesAcrossSegmentsInOrder() {
+        DrawEventStore first = store(1, 5);
+        DrawEventStore second = store(6, 7);
+        HistoryCursor cursor = new HistoryCursor(List.of(
+                new HistoryCursor.Segment(first, 1, 5),
+                new HistoryCursor.Segment(second, 0, 7)), 12);
+
+        assertEquals(11, cursor.size());
+        assertEquals(12, cursor.getSequence());
+
+        List<Integer> pages = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        while (cursor.hasNext()) {
+            List<DrawEvent> page = cursor.next(4);
+            pages.add(page.size());
+            page.forEach(event -> sequences.add(event.getSequence()));
+        }
+        assertEquals(List.of(4, 4, 3), pages);
+        assertEquals(List.of(2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L), sequences);
+        assertTrue(cursor.next(4).isEmpty());
+    }
+
+    @Test
+    void closesEverySource() {
+        List<Integer> closed = new ArrayList<>();
+        DrawEventStore store = store(1, 3);
+        EventSource first = new ClosingSource(store, () -> closed.add(1));
+        EventSource second = new ClosingSource(store, () -> closed.add(2));
+        try (HistoryCursor cursor = new HistoryCursor(List.of(
+                new HistoryCursor.Segment(first, 0, 3),
+                new HistoryCursor.Segment(second, 0, 0)), 3)) {
+            assertEquals(3, cursor.next(10).size());
+            assertFalse(cursor.hasNext());
+        }
+        assertEquals(List.of(1, 2), closed);
+    }
+
+    private record ClosingSource(EventSource source, Runnable onClose) implements EventSource {
+        @Override
+        public List<DrawEvent> slice(int from, int to) {
+            return source.slice(from, to);
+        }
+
+        @Override
+        public void close() {
+            onClose.run();
+        }
+    }
+
+    private static DrawEventStore store(long firstSequence, int count) {
+        DrawEventStore store = new DrawEventStore("r");
+        for (int i = 0; i < count; i++) {
+            store.append(new DrawEvent(UUID.randomUUID().toString(), "r", LocalDateTime.now(), "a",
+                    DrawEventType.STROKE_MOVE, new DrawData("#000000", 1, i, i, "brush"), firstSequence + i));
+        }
+        return store;
+    }
+}
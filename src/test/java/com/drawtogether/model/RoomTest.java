@@ -0,0 +1,162 @@
+package com.drawtogether.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class RoomTest {
+
+    @Test
+    void concurrentJoinsNeverExceedCapacity() throws Exception {
+        Room room = new Room("r", "sala", 5);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> joins = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String userId = "u" + i;
+                joins.add(pool.submit(() -> {
+                    start.await();
+                    return room.addParticipant(userId);
+                }));
+            }
+            start.countDown();
+
+            int joined = 0;
+            for (Future<Boolean> join : joins) {
+                if (join.get()) {
+                    joined++;
+                }
+            }
+            assertEquals(5, joined);
+            assertEquals(5, room.getCurrentParticipantsCount());
+            assertEquals(5, room.getParticipants().size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void repeatedJoinGivesTheSlotBack() {
+        Room room = new Room("r", "sala", 2);
+        assertTrue(room.addParticipant("a"));
+        assertFalse(room.addParticipant("a"));
+        assertEquals(1, room.getCurrentParticipantsCount());
+        assertTrue(room.addParticipant("b"));
+        assertFalse(room.addParticipant("c"));
+    }
+
+    @Test
+    void leavingFreesTheSlot() {
+        Room room = new Room("r", "sala", 1);
+        assertTrue(room.addParticipant("a"));
+        assertFalse(room.addParticipant("b"));
+        assertTrue(room.removeParticipant("a"));
+        assertFalse(room.removeParticipant("a"));
+        assertTrue(room.addParticipant("b"));
+    }
+
+    @Test
+    void closedRoomRejectsJoins() {
+        Room room = new Room("r", "sala", 3);
+        assertTrue(room.addParticipant("a"));
+        // Con alguien dentro el reaper no puede cerrarla
+        assertFalse(room.closeIfEmptySince(System.nanoTime()));
+        assertTrue(room.removeParticipant("a"));
+
+        assertTrue(room.closeIfEmptySince(System.nanoTime()));
+        assertTrue(room.isClosed());
+        assertFalse(room.addParticipant("b"));
+        assertEquals(0, room.getCurrentParticipantsCount());
+    }
+
+    @Test
+    void resumeReturnsOnlyTheMissingEvents() {
+        Room room = new Room("r", "sala", 3);
+        for (int i = 0; i < 10; i++) {
+            room.addDrawEvent(move("a"));
+        }
+
+        Optional<HistoryCursor> missing = room.openHistorySince(7);
+        assertTrue(missing.isPresent());
+        List<DrawEvent> events = missing.get().next(100);
+        assertEquals(List.of(8L, 9L, 10L), events.stream().map(DrawEvent::getSequence).toList());
+        assertEquals(10, missing.get().getSequence());
+
+        assertFalse(room.openHistorySince(11).isPresent());
+    }
+
+    @Test
+    void historySizeCountsSnapshotAndTail() {
+        Room room = new Room("r", "sala", 3);
+        room.addDrawEvent(event("a", DrawEventType.STROKE_START));
+        room.addDrawEvent(move("a"));
+        room.addDrawEvent(event("a", DrawEventType.CLEAR_CANVAS));
+        room.addDrawEvent(move("b"));
+        assertEquals(4, room.getHistorySize());
+
+        room.compact();
+        assertEquals(1, room.getHistorySize());
+        assertEquals(room.openHistory().size(), room.getHistorySize());
+        assertEquals(4, room.getLastSequence());
+    }
+
+    @Test
+    void joiningSpilledRoomStreamsWithoutReloading() {
+        Room room = new Room("r", "sala", 3);
+        for (int i = 0; i < 5; i++) {
+            room.addDrawEvent(move("a"));
+        }
+        List<Integer> loads = new ArrayList<>();
+        assertTrue(room.spill(events -> new SpilledHistory() {
+            @Override
+            public List<DrawEvent> load() {
+                loads.add(events.size());
+                return events;
+            }
+
+            @Override
+            public HistoryCursor open(long sequence) {
+                DrawEventStore store = new DrawEventStore("r");
+                events.forEach(store::append);
+                return HistoryCursor.over(store, 0, store.size(), sequence);
+            }
+
+            @Override
+            public void discard() {
+            }
+        }));
+
+        HistoryCursor history = room.openHistory();
+        assertTrue(room.isSpilled());
+        assertTrue(loads.isEmpty());
+        assertEquals(5, history.next(100).size());
+        assertEquals(5, history.getSequence());
+
+        room.loadHistory();
+        assertFalse(room.isSpilled());
+        assertEquals(List.of(5), loads);
+        assertEquals(6, room.addDrawEvent(move("b")).getSequence());
+    }
+
+    private static DrawEvent move(String userId) {
+        return event(userId, DrawEventType.STROKE_MOVE);
+    }
+
+    private static DrawEvent event(String userId, DrawEventType type) {
+        DrawData drawData = type == DrawEventType.CLEAR_CANVAS ? null : new DrawData("#000000", 2, 1, 1, "brush");
+        return new DrawEvent(UUID.randomUUID().toString(), "r", LocalDateTime.now(), userId, type, drawData);
+    }
+}
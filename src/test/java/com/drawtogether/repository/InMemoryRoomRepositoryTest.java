@@ -0,0 +1,75 @@
+package com.drawtogether.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.drawtogether.model.Room;
+import com.drawtogether.model.RoomSummary;
+
+class InMemoryRoomRepositoryTest {
+
+    @Test
+    void pagesFollowTheCursorInEachOrder() {
+        InMemoryRoomRepository repository = repository();
+
+        assertEquals(List.of("r0", "r1", "r2", "r3", "r4", "r5"), allIds(repository, null));
+        // Por nombre, solo las que empiezan por el prefijo
+        assertEquals(List.of("r1", "r3", "r5"), allIds(repository, "Sketch"));
+    }
+
+    @Test
+    void rejectsCursorsFromAnotherQuery() {
+        InMemoryRoomRepository repository = repository();
+        String byName = repository.findPage(new RoomQuery("sketch", false, null, 1)).nextCursor();
+        String byCreation = repository.findPage(new RoomQuery(null, false, null, 1)).nextCursor();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.findPage(new RoomQuery("ske", false, byName, 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.findPage(new RoomQuery(null, false, byName, 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.findPage(new RoomQuery("sketch", false, byCreation, 1)));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        InMemoryRoomRepository repository = repository();
+        String noSeparator = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("sin separador".getBytes(StandardCharsets.UTF_8));
+
+        for (String cursor : List.of(noSeparator, "no es base64!", "a.b.c", "Y3JlYXRlZA..bm8gZXMgdW5hIGZlY2hh.cjE")) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> repository.findPage(new RoomQuery(null, false, cursor, 1)), cursor);
+        }
+    }
+
+    private static List<String> allIds(InMemoryRoomRepository repository, String prefix) {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            RoomPage page = repository.findPage(new RoomQuery(prefix, false, cursor, 2));
+            page.rooms().stream().map(RoomSummary::id).forEach(ids::add);
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static InMemoryRoomRepository repository() {
+        InMemoryRoomRepository repository = new InMemoryRoomRepository();
+        LocalDateTime start = LocalDateTime.of(2025, 6, 25, 10, 0);
+        for (int i = 0; i < 6; i++) {
+            // Nombres con salto de línea para comprobar que el cursor no depende de un separador
+            String name = i % 2 == 0 ? "Lienzo " + i : "Sketch\n" + i;
+            repository.save(new Room("r" + i, name, 4, start.plusMinutes(i)));
+        }
+        return repository;
+    }
+}
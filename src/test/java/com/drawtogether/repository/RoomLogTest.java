@@ -0,0 +1,115 @@
+package com.drawtogether.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.drawtogether.model.DrawData;
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.DrawEventType;
+import com.drawtogether.model.HistoryCursor;
+import com.drawtogether.model.Room;
+
+class RoomLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoveryStopsAtTheFirstCorruptRecord() throws IOException {
+        Room room = new Room("r", "sala", 4);
+        RoomLog log = RoomLog.create(directory, room, 64 * 1024);
+        for (int i = 1; i <= 10; i++) {
+            log.append(event(i));
+        }
+        log.close();
+
+        // Una escritura a medias: el último registro queda con bytes que no cuadran con su CRC
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer contents = ByteBuffer.allocate((int) channel.size());
+            channel.read(contents, 0);
+            int last = contents.capacity() - 1;
+            while (contents.get(last) == 0) {
+                last--;
+            }
+            channel.write(ByteBuffer.wrap(new byte[] { (byte) ~contents.get(last) }), last);
+        }
+
+        RoomLog reopened = RoomLog.open(directory, 64 * 1024);
+        assertEquals("sala", reopened.newRoom().getName());
+        assertEquals(9, reopened.getLastSequence());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), replayed(reopened));
+
+        // Se sigue escribiendo justo detrás del último registro válido
+        reopened.append(event(10));
+        reopened.close();
+        RoomLog again = RoomLog.open(directory, 64 * 1024);
+        assertEquals(10, again.getLastSequence());
+        assertEquals(10, replayed(again).size());
+        again.close();
+    }
+
+    @Test
+    void checkpointReplacesTheSegmentsItCovers() throws IOException {
+        Room room = new Room("r", "sala", 4);
+        RoomLog log = RoomLog.create(directory, room, 1024);
+        for (int i = 0; i < 200; i++) {
+            log.append(room.addDrawEvent(event(0)));
+        }
+        int segmentsBefore = segments().size();
+        assertTrue(segmentsBefore > 2);
+        assertTrue(log.needsCheckpoint());
+
+        try (HistoryCursor history = room.openStoredHistory()) {
+            log.checkpoint(history);
+        }
+        assertEquals(200, log.getCheckpointSequence());
+        assertTrue(segments().size() < segmentsBefore);
+        for (int i = 0; i < 5; i++) {
+            log.append(room.addDrawEvent(event(0)));
+        }
+        // Lo que ya solo está en el checkpoint no se puede leer del log
+        assertThrows(IllegalStateException.class, () -> log.readFrom(1).slice(0, 1));
+        log.close();
+
+        RoomLog reopened = RoomLog.open(directory, 1024);
+        assertEquals(200, reopened.getCheckpointSequence());
+        assertEquals(205, reopened.getLastSequence());
+        assertEquals(200, reopened.readCheckpoint().size());
+        assertEquals(List.of(201L, 202L, 203L, 204L, 205L), replayed(reopened));
+        reopened.close();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    private static List<Long> replayed(RoomLog log) {
+        List<Long> sequences = new ArrayList<>();
+        log.replay(event -> sequences.add(event.getSequence()));
+        return sequences;
+    }
+
+    private static DrawEvent event(long sequence) {
+        return new DrawEvent(UUID.randomUUID().toString(), "r", LocalDateTime.now(), "ana",
+                DrawEventType.STROKE_MOVE, new DrawData("#000000", 2, sequence, sequence, "brush"), sequence);
+    }
+}
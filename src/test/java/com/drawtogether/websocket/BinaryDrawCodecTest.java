@@ -0,0 +1,212 @@
+package com.drawtogether.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.drawtogether.model.DrawData;
+import com.drawtogether.model.DrawEvent;
+import com.drawtogether.model.DrawEventType;
+
+class BinaryDrawCodecTest {
+
+    @Test
+    void decodeResolvesTheConnectionDictionary() {
+        ByteBuffer frame = ByteBuffer.allocate(128);
+        define(frame, BinaryDrawCodec.KIND_COLOR, 3, "#ff0000");
+        define(frame, BinaryDrawCodec.KIND_TOOL, 0, "brush");
+        frame.put(BinaryDrawCodec.OP_DRAW).put((byte) DrawEventType.STROKE_MOVE.ordinal()).put((byte) 1)
+                .putFloat(10.5f).putFloat(-2f).putFloat(4f).putShort((short) 3).putShort((short) 0);
+        frame.put(BinaryDrawCodec.OP_DRAW).put((byte) DrawEventType.UNDO.ordinal()).put((byte) 0);
+        frame.flip();
+
+        List<DrawEventCodec.IncomingMessage> messages =
+                BinaryDrawCodec.decode(frame, new BinaryDrawCodec.InboundDictionary());
+
+        assertEquals(2, messages.size());
+        DrawEventCodec.IncomingMessage move = messages.get(0);
+        assertEquals(DrawEventCodec.DRAW_EVENT_ACTION, move.action);
+        assertEquals("STROKE_MOVE", move.eventType);
+        assertEquals("#ff0000", move.drawData.getColor());
+        assertEquals("brush", move.drawData.getTool());
+        assertEquals(10.5, move.drawData.getX());
+        assertEquals(-2, move.drawData.getY());
+        assertEquals(4, move.drawData.getStrokeWidth());
+        assertEquals("UNDO", messages.get(1).eventType);
+        assertNull(messages.get(1).drawData);
+    }
+
+    @Test
+    void decodeRejectsUndefinedIds() {
+        BinaryDrawCodec.InboundDictionary dictionary = new BinaryDrawCodec.InboundDictionary();
+        ByteBuffer frame = ByteBuffer.allocate(64);
+        define(frame, BinaryDrawCodec.KIND_TOOL, 0, "brush");
+        frame.put(BinaryDrawCodec.OP_RESET);
+        frame.put(BinaryDrawCodec.OP_DRAW).put((byte) 0).put((byte) 1)
+                .putFloat(0).putFloat(0).putFloat(1).putShort((short) 0).putShort((short) 0);
+        frame.flip();
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryDrawCodec.decode(frame, dictionary));
+    }
+
+    @Test
+    void decodeRejectsTruncatedFrames() {
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.put(BinaryDrawCodec.OP_DRAW).put((byte) 0).put((byte) 1).putFloat(1);
+        frame.flip();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> BinaryDrawCodec.decode(frame, new BinaryDrawCodec.InboundDictionary()));
+        assertEquals("Frame binario truncado", error.getMessage());
+    }
+
+    @Test
+    void decodeRejectsOversizedValues() {
+        ByteBuffer frame = ByteBuffer.allocate(512);
+        define(frame, BinaryDrawCodec.KIND_COLOR, 0, "#".repeat(BinaryDrawCodec.MAX_VALUE_BYTES + 1));
+        frame.flip();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryDrawCodec.decode(frame, new BinaryDrawCodec.InboundDictionary()));
+    }
+
+    @Test
+    void encodeBoundsLongValues() {
+        // 70000 bytes no caben en el campo de longitud u16; se corta sin partir la ñ
+        String userId = "a" + "ñ".repeat(35_000);
+        BinaryDrawCodec.RoomDictionary dictionary = new BinaryDrawCodec.RoomDictionary();
+
+        ServerFrame frame = ServerFrame.parse(BinaryDrawCodec.encode(List.of(event(userId, "#00ff00", 1)), dictionary));
+
+        String sent = frame.draws.get(0).user();
+        assertEquals(BinaryDrawCodec.MAX_VALUE_BYTES - 1, sent.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(userId.substring(0, sent.length()), sent);
+        assertEquals(sent, ServerFrame.parse(BinaryDrawCodec.encodeDictionary(dictionary)).names
+                .get(BinaryDrawCodec.KIND_USER).get(0));
+    }
+
+    @Test
+    void encodeDefinesEachValueOnce() {
+        BinaryDrawCodec.RoomDictionary dictionary = new BinaryDrawCodec.RoomDictionary();
+        List<DrawEvent> events = List.of(event("ana", "#00ff00", 1), event("ana", null, 2), event("luis", "#00ff00", 3));
+
+        ServerFrame first = ServerFrame.parse(BinaryDrawCodec.encode(events, dictionary));
+        assertEquals(3, first.draws.size());
+        // ana, luis, el color y la herramienta
+        assertEquals(4, first.defines);
+        assertEquals(List.of("ana", "ana", "luis"), first.draws.stream().map(Draw::user).toList());
+        assertEquals(List.of(1L, 2L, 3L), first.draws.stream().map(Draw::sequence).toList());
+        assertEquals("#00ff00", first.draws.get(0).color());
+        assertNull(first.draws.get(1).color());
+
+        // El cliente conserva lo definido en frames anteriores
+        ServerFrame again = new ServerFrame(first.names);
+        again.read(BinaryDrawCodec.encode(List.of(event("luis", "#00ff00", 4)), dictionary));
+        assertEquals(0, again.defines);
+        assertEquals("luis", again.draws.get(0).user());
+
+        // Un miembro nuevo recibe el diccionario completo tras un RESET
+        ServerFrame snapshot = new ServerFrame(first.names);
+        ByteBuffer dictionaryFrame = BinaryDrawCodec.encodeDictionary(dictionary);
+        assertEquals(BinaryDrawCodec.OP_RESET, dictionaryFrame.get(0));
+        snapshot.read(dictionaryFrame);
+        assertEquals(4, snapshot.defines);
+    }
+
+    @Test
+    void withoutEventsKeepsTheDefines() {
+        BinaryDrawCodec.RoomDictionary dictionary = new BinaryDrawCodec.RoomDictionary();
+        List<DrawEvent> events = List.of(event("ana", "#00ff00", 1), event("luis", null, 2), event("ana", "#0000ff", 3));
+        ByteBuffer frame = BinaryDrawCodec.encode(events, dictionary);
+
+        ServerFrame filtered = ServerFrame.parse(BinaryDrawCodec.withoutEvents(frame, events, i -> i != 1));
+
+        assertEquals(5, filtered.defines);
+        assertEquals(List.of(2L), filtered.draws.stream().map(Draw::sequence).toList());
+        assertEquals("luis", filtered.draws.get(0).user());
+        // El frame original no se toca
+        assertEquals(3, ServerFrame.parse(frame).draws.size());
+    }
+
+    private static void define(ByteBuffer frame, byte kind, int id, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        frame.put(BinaryDrawCodec.OP_DEFINE).put(kind).putShort((short) id).putShort((short) bytes.length).put(bytes);
+    }
+
+    private static DrawEvent event(String userId, String color, long sequence) {
+        DrawData drawData = color != null ? new DrawData(color, 3, 1, 2, "brush") : null;
+        DrawEventType type = color != null ? DrawEventType.STROKE_MOVE : DrawEventType.CLEAR_CANVAS;
+        return new DrawEvent(UUID.randomUUID().toString(), "r", LocalDateTime.now(), userId, type, drawData, sequence);
+    }
+
+    private record Draw(DrawEventType type, String user, long sequence, String color, String tool) {
+    }
+
+    /**
+     * Lector de frames del servidor como lo haría un cliente, con el diccionario de la sala.
+     */
+    private static final class ServerFrame {
+        private final List<Map<Integer, String>> names;
+        private final List<Draw> draws = new ArrayList<>();
+        private int defines;
+
+        private ServerFrame(List<Map<Integer, String>> names) {
+            this.names = names;
+        }
+
+        private static ServerFrame parse(ByteBuffer frame) {
+            ServerFrame parsed = new ServerFrame(List.of(new HashMap<>(), new HashMap<>(), new HashMap<>()));
+            parsed.read(frame);
+            return parsed;
+        }
+
+        private void read(ByteBuffer source) {
+            ByteBuffer frame = source.duplicate();
+            while (frame.hasRemaining()) {
+                byte op = frame.get();
+                if (op == BinaryDrawCodec.OP_RESET) {
+                    names.forEach(Map::clear);
+                } else if (op == BinaryDrawCodec.OP_DEFINE) {
+                    byte kind = frame.get();
+                    int id = Short.toUnsignedInt(frame.getShort());
+                    byte[] bytes = new byte[Short.toUnsignedInt(frame.getShort())];
+                    frame.get(bytes);
+                    names.get(kind).put(id, new String(bytes, StandardCharsets.UTF_8));
+                    defines++;
+                } else {
+                    assertEquals(BinaryDrawCodec.OP_DRAW, op);
+                    DrawEventType type = DrawEventType.values()[frame.get()];
+                    boolean hasDrawData = frame.get() == 1;
+                    String user = name(BinaryDrawCodec.KIND_USER, frame.getShort());
+                    long sequence = Integer.toUnsignedLong(frame.getInt());
+                    String color = null;
+                    String tool = null;
+                    if (hasDrawData) {
+                        frame.position(frame.position() + 12);
+                        color = name(BinaryDrawCodec.KIND_COLOR, frame.getShort());
+                        tool = name(BinaryDrawCodec.KIND_TOOL, frame.getShort());
+                    }
+                    draws.add(new Draw(type, user, sequence, color, tool));
+                }
+            }
+        }
+
+        private String name(byte kind, short id) {
+            String name = names.get(kind).get(Short.toUnsignedInt(id));
+            assertNotNull(name, "Id sin DEFINE previo: " + id);
+            return name;
+        }
+    }
+}